@@ -0,0 +1,358 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.benchmarks;
+
+import org.ehcache.sizeof.SizeOf;
+import org.ehcache.sizeof.SizeOfFilterSource;
+import org.ehcache.sizeof.filters.CombinationSizeOfFilter;
+import org.ehcache.sizeof.filters.SizeOfFilter;
+import org.ehcache.sizeof.impl.AgentSizeOf;
+import org.ehcache.sizeof.impl.AsyncAgentSizeOf;
+import org.ehcache.sizeof.impl.ObjectLayout;
+import org.ehcache.sizeof.impl.ReflectionSizeOf;
+import org.ehcache.sizeof.impl.UnsafeSizeOf;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures, in fresh JVMs, what the library costs before it sizes at full speed, separately for each engine:
+ * <ul>
+ *   <li>{@code layoutNanos}: detecting the JVM and its object layout ({@code JvmInformation}, {@code ObjectLayout})</li>
+ *   <li>{@code filterSourceNanos}: looking {@code FilterConfigurator}s up through the {@code ServiceLoader}</li>
+ *   <li>{@code newInstanceNanos}: creating the engine, which includes attaching the agent for {@code agent}</li>
+ *   <li>{@code firstDeepSizeOfNanos}: the first {@code deepSizeOf} of a graph of classes never sized before</li>
+ *   <li>{@code steadyStateNanos}: the median duration of the last of {@value #CALLS} {@code deepSizeOf} of that graph</li>
+ *   <li>{@code timeToSteadyStateNanos}: the time spent sizing the graph until a call first takes less than
+ *   {@value #STEADY_STATE_FACTOR} times the steady state duration</li>
+ *   <li>{@code processNanos}: the whole life of the forked JVM, as seen from the harness</li>
+ * </ul>
+ * Results are written as JSON, each metric with its minimum, median and maximum across forks, and every sample.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar org.ehcache.sizeof.benchmarks.ColdStart [-f forks] [-o file.json]
+ * [-jvmArg arg]... [engine]...}, engines amongst {@code default}, {@code agent}, {@code async}, {@code unsafe} and
+ * {@code reflection} (all of them if none is given).
+ */
+public final class ColdStart {
+
+    static final int CALLS = 2000;
+    static final int STEADY_STATE_CALLS = 200;
+    static final double STEADY_STATE_FACTOR = 1.5;
+
+    private static final String RESULT_PREFIX = "COLD-START ";
+    private static final List<String> ENGINES = Arrays.asList("default", "agent", "async", "unsafe", "reflection");
+    private static final List<String> METRICS = Arrays.asList("layoutNanos", "filterSourceNanos", "newInstanceNanos",
+        "firstDeepSizeOfNanos", "steadyStateNanos", "timeToSteadyStateNanos", "processNanos");
+
+    private ColdStart() {
+        // not instantiable
+    }
+
+    public static void main(String[] args) throws Exception {
+        int forks = 10;
+        String output = null;
+        final List<String> jvmArgs = new ArrayList<>();
+        final List<String> engines = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-f")) {
+                forks = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-o")) {
+                output = args[++i];
+            } else if (args[i].equals("-jvmArg")) {
+                jvmArgs.add(args[++i]);
+            } else if (ENGINES.contains(args[i])) {
+                engines.add(args[i]);
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+        if (engines.isEmpty()) {
+            engines.addAll(ENGINES);
+        }
+        if (!System.getProperty("java.specification.version").startsWith("1.")) {
+            // lets the agent attach to its own JVM
+            jvmArgs.add("-Djdk.attach.allowAttachSelf=true");
+        }
+
+        final Map<String, List<Map<String, String>>> results = new LinkedHashMap<>();
+        for (String engine : engines) {
+            final List<Map<String, String>> samples = new ArrayList<>();
+            for (int fork = 0; fork < forks; fork++) {
+                System.err.printf("%s: fork %d of %d%n", engine, fork + 1, forks);
+                samples.add(fork(engine, jvmArgs));
+            }
+            results.put(engine, samples);
+        }
+
+        final String json = toJson(forks, jvmArgs, results);
+        if (output != null) {
+            Files.write(Paths.get(output), json.getBytes(StandardCharsets.UTF_8));
+        }
+        System.out.println(json);
+    }
+
+    private static Map<String, String> fork(String engine, List<String> jvmArgs) throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Probe.class.getName());
+        command.add(engine);
+
+        final long start = System.nanoTime();
+        final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        final List<String> out = new ArrayList<>();
+        Map<String, String> result = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    result = parse(line.substring(RESULT_PREFIX.length()));
+                } else {
+                    out.add(line);
+                }
+            }
+        }
+        final int exitCode = process.waitFor();
+        final long processNanos = System.nanoTime() - start;
+        if (result == null || exitCode != 0) {
+            result = new LinkedHashMap<>();
+            result.put("error", "fork exited with " + exitCode + ": " + String.join("\n", out));
+        } else {
+            result.put("processNanos", Long.toString(processNanos));
+        }
+        return result;
+    }
+
+    private static Map<String, String> parse(String line) {
+        final Map<String, String> values = new LinkedHashMap<>();
+        for (String pair : line.split(" ")) {
+            final int separator = pair.indexOf('=');
+            values.put(pair.substring(0, separator), pair.substring(separator + 1));
+        }
+        return values;
+    }
+
+    private static String toJson(int forks, List<String> jvmArgs, Map<String, List<Map<String, String>>> results) {
+        final StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"javaVersion\": ").append(quote(System.getProperty("java.version"))).append(",\n");
+        json.append("  \"vmName\": ").append(quote(System.getProperty("java.vm.name"))).append(",\n");
+        json.append("  \"forks\": ").append(forks).append(",\n");
+        json.append("  \"jvmArgs\": [");
+        for (int i = 0; i < jvmArgs.size(); i++) {
+            json.append(i == 0 ? "" : ", ").append(quote(jvmArgs.get(i)));
+        }
+        json.append("],\n");
+        json.append("  \"engines\": {");
+        boolean firstEngine = true;
+        for (Map.Entry<String, List<Map<String, String>>> engine : results.entrySet()) {
+            json.append(firstEngine ? "\n" : ",\n").append("    ").append(quote(engine.getKey())).append(": {");
+            firstEngine = false;
+            final List<String> errors = new ArrayList<>();
+            for (Map<String, String> sample : engine.getValue()) {
+                if (sample.containsKey("error")) {
+                    errors.add(sample.get("error"));
+                }
+            }
+            boolean firstMetric = true;
+            for (String metric : METRICS) {
+                final List<Long> samples = new ArrayList<>();
+                for (Map<String, String> sample : engine.getValue()) {
+                    if (sample.containsKey(metric)) {
+                        samples.add(Long.parseLong(sample.get(metric)));
+                    }
+                }
+                if (samples.isEmpty()) {
+                    continue;
+                }
+                final List<Long> sorted = new ArrayList<>(samples);
+                Collections.sort(sorted);
+                json.append(firstMetric ? "\n" : ",\n").append("      ").append(quote(metric)).append(": {")
+                    .append("\"min\": ").append(sorted.get(0))
+                    .append(", \"median\": ").append(sorted.get(sorted.size() / 2))
+                    .append(", \"max\": ").append(sorted.get(sorted.size() - 1))
+                    .append(", \"samples\": ").append(samples)
+                    .append("}");
+                firstMetric = false;
+            }
+            json.append(firstMetric ? "\n" : ",\n").append("      \"errors\": [");
+            for (int i = 0; i < errors.size(); i++) {
+                json.append(i == 0 ? "" : ", ").append(quote(errors.get(i)));
+            }
+            json.append("]\n    }");
+        }
+        json.append("\n  }\n}");
+        return json.toString();
+    }
+
+    private static String quote(String value) {
+        final StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int)c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Runs in the forked JVM, and prints its measurements on a single line
+     */
+    public static final class Probe {
+
+        private Probe() {
+            // not instantiable
+        }
+
+        public static void main(String[] args) {
+            final String engine = args[0];
+
+            final long start = System.nanoTime();
+            final ObjectLayout layout = ObjectLayout.CURRENT_LAYOUT;
+            final long layoutDetected = System.nanoTime();
+            final SizeOfFilter[] filters = new SizeOfFilterSource(true).getFilters();
+            final long filtersLoaded = System.nanoTime();
+            final SizeOf sizeOf = newEngine(engine, filters);
+            final long engineCreated = System.nanoTime();
+
+            final Object graph = coldGraph();
+            final long[] durations = new long[CALLS];
+            long size = 0;
+            for (int i = 0; i < CALLS; i++) {
+                final long callStart = System.nanoTime();
+                size += sizeOf.deepSizeOf(graph);
+                durations[i] = System.nanoTime() - callStart;
+            }
+
+            final long[] lastCalls = Arrays.copyOfRange(durations, CALLS - STEADY_STATE_CALLS, CALLS);
+            Arrays.sort(lastCalls);
+            final long steadyState = lastCalls[lastCalls.length / 2];
+            long timeToSteadyState = 0;
+            for (long duration : durations) {
+                timeToSteadyState += duration;
+                if (duration <= steadyState * STEADY_STATE_FACTOR) {
+                    break;
+                }
+            }
+
+            final PrintStream out = System.out;
+            out.println(RESULT_PREFIX
+                        + "layoutNanos=" + (layoutDetected - start)
+                        + " filterSourceNanos=" + (filtersLoaded - layoutDetected)
+                        + " newInstanceNanos=" + (engineCreated - filtersLoaded)
+                        + " firstDeepSizeOfNanos=" + durations[0]
+                        + " steadyStateNanos=" + steadyState
+                        + " timeToSteadyStateNanos=" + timeToSteadyState
+                        + " engine=" + sizeOf.getClass().getSimpleName()
+                        + " layout=" + layout.getJvmInformation().name()
+                        + " checksum=" + size);
+        }
+
+        private static SizeOf newEngine(String engine, SizeOfFilter[] filters) {
+            final SizeOfFilter filter = new CombinationSizeOfFilter(filters);
+            switch (engine) {
+                case "default":
+                    return SizeOf.newInstance(filters);
+                case "agent":
+                    return new AgentSizeOf(filter);
+                case "async":
+                    return new AsyncAgentSizeOf(filter);
+                case "unsafe":
+                    return new UnsafeSizeOf(filter);
+                case "reflection":
+                    return new ReflectionSizeOf(filter);
+                default:
+                    throw new IllegalArgumentException("Unknown engine " + engine);
+            }
+        }
+    }
+
+    /**
+     * A map of customers and their orders, of classes only ever loaded and sized here
+     */
+    static Object coldGraph() {
+        final Map<UUID, Customer> customers = new ConcurrentHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            final Customer customer = new Customer("customer-" + i, new Address(i + " Main Street", "Springfield", "12345"));
+            for (int j = 0; j < 5; j++) {
+                customer.orders.add(new Order(LocalDateTime.of(2024, 1, 1 + j, 12, 0), new BigDecimal("19.99"),
+                    new String[] { "item-" + j, "item-" + (j + 1) }));
+            }
+            customers.put(UUID.randomUUID(), customer);
+        }
+        return customers;
+    }
+
+    static final class Customer {
+        final String name;
+        final Address address;
+        final List<Order> orders = new ArrayList<>();
+        final Map<String, String> attributes = new HashMap<>();
+
+        Customer(String name, Address address) {
+            this.name = name;
+            this.address = address;
+            attributes.put("tier", "gold");
+        }
+    }
+
+    static final class Address {
+        final String street;
+        final String city;
+        final String zip;
+
+        Address(String street, String city, String zip) {
+            this.street = street;
+            this.city = city;
+            this.zip = zip;
+        }
+    }
+
+    static final class Order {
+        final LocalDateTime placed;
+        final BigDecimal amount;
+        final String[] items;
+
+        Order(LocalDateTime placed, BigDecimal amount, String[] items) {
+            this.placed = placed;
+            this.amount = amount;
+            this.items = items;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.benchmarks;
+
+import org.ehcache.sizeof.SizeOf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares deep sizing from several threads through a single {@link SizeOf}, whose per class caches are then shared,
+ * to doing so through one {@code SizeOf} per thread.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djdk.attach.allowAttachSelf=true")
+@Threads(4)
+public class ContentionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        SizeOf sizeOf;
+
+        @Setup
+        public void setUp() {
+            sizeOf = SizeOf.newInstance();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PerThread {
+        SizeOf sizeOf;
+        Object root;
+
+        @Setup
+        public void setUp() {
+            sizeOf = SizeOf.newInstance();
+            root = Graphs.pojoMap(100);
+        }
+    }
+
+    @Benchmark
+    public long sharedSizeOf(Shared shared, PerThread thread) {
+        return shared.sizeOf.deepSizeOf(thread.root);
+    }
+
+    @Benchmark
+    public long sizeOfPerThread(PerThread thread) {
+        return thread.sizeOf.deepSizeOf(thread.root);
+    }
+}
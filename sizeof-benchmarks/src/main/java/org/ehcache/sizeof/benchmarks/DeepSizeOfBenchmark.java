@@ -0,0 +1,76 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.benchmarks;
+
+import org.ehcache.sizeof.SizeOf;
+import org.ehcache.sizeof.filters.TypeFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures deep sizing of cache entry like graphs, either walking all of them, or with a filter ignoring a field of the
+ * POJOs and the {@code String}s of the DTOs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djdk.attach.allowAttachSelf=true")
+public class DeepSizeOfBenchmark {
+
+    @Param({ "pojoMap", "stringDtos", "objectArray" })
+    public String graph;
+
+    @Param({ "1000" })
+    public int entries;
+
+    @Param({ "false", "true" })
+    public boolean filtered;
+
+    private SizeOf sizeOf;
+    private Object root;
+
+    @Setup
+    public void setUp() throws NoSuchFieldException {
+        if (filtered) {
+            final TypeFilter filter = new TypeFilter();
+            filter.addField(Graphs.Pojo.class.getDeclaredField("metadata"));
+            filter.addClass(String.class, true);
+            sizeOf = SizeOf.newInstance(filter);
+        } else {
+            sizeOf = SizeOf.newInstance();
+        }
+        root = Graphs.create(graph, entries);
+    }
+
+    @Benchmark
+    public long deepSizeOf() {
+        return sizeOf.deepSizeOf(root);
+    }
+}
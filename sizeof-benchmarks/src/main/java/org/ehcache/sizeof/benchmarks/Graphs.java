@@ -0,0 +1,193 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.benchmarks;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Object graphs, and class shapes, the benchmarks size
+ */
+final class Graphs {
+
+    private Graphs() {
+        // not instantiable
+    }
+
+    /**
+     * Builds a graph
+     *
+     * @param name    {@code pojoMap}, {@code stringDtos} or {@code objectArray}
+     * @param entries the amount of entries of the graph
+     * @return the graph
+     */
+    static Object create(String name, int entries) {
+        switch (name) {
+            case "pojoMap":
+                return pojoMap(entries);
+            case "stringDtos":
+                return stringDtos(entries);
+            case "objectArray":
+                return objectArray(entries);
+            default:
+                throw new IllegalArgumentException("Unknown graph " + name);
+        }
+    }
+
+    /**
+     * A cache segment like map of keys to POJOs, each holding a few boxed, temporal and nested values
+     */
+    static Map<Long, Pojo> pojoMap(int entries) {
+        final Map<Long, Pojo> map = new HashMap<>();
+        for (long i = 0; i < entries; i++) {
+            map.put(i, new Pojo(i));
+        }
+        return map;
+    }
+
+    /**
+     * A list of DTOs made of strings mostly
+     */
+    static List<StringDto> stringDtos(int entries) {
+        final List<StringDto> dtos = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            dtos.add(new StringDto(i));
+        }
+        return dtos;
+    }
+
+    /**
+     * A large array mixing distinct and shared elements of various types
+     */
+    static Object[] objectArray(int entries) {
+        final Object[] array = new Object[entries * 4];
+        final Pojo shared = new Pojo(-1);
+        for (int i = 0; i < entries; i++) {
+            array[i * 4] = "element-" + i;
+            array[i * 4 + 1] = (long)i;
+            array[i * 4 + 2] = new int[i % 16];
+            array[i * 4 + 3] = shared;
+        }
+        return array;
+    }
+
+    /**
+     * An instance of a class shape
+     *
+     * @param shape {@code empty}, {@code primitives}, {@code references}, {@code deepHierarchy} or {@code array}
+     * @return the instance
+     */
+    static Object shape(String shape) {
+        switch (shape) {
+            case "empty":
+                return new Object();
+            case "primitives":
+                return new Primitives();
+            case "references":
+                return new Pojo(42);
+            case "deepHierarchy":
+                return new Level3();
+            case "array":
+                return new long[64];
+            default:
+                throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+    }
+
+    static final class Pojo {
+        final Long id;
+        final String name;
+        final LocalDate created;
+        final BigDecimal balance;
+        final Address address;
+        final List<String> tags = new ArrayList<>(2);
+        Object metadata;
+
+        Pojo(long id) {
+            this.id = id;
+            this.name = "customer-" + id;
+            this.created = LocalDate.of(2024, 1, 1).plusDays(id % 365);
+            this.balance = BigDecimal.valueOf(id * 100, 2);
+            this.address = new Address(id + " Main Street", "Springfield");
+            this.tags.add("tier-" + id % 3);
+            this.metadata = new HashMap<>(4);
+        }
+    }
+
+    static final class Address {
+        final String street;
+        final String city;
+
+        Address(String street, String city) {
+            this.street = street;
+            this.city = city;
+        }
+    }
+
+    static final class StringDto {
+        final String firstName;
+        final String lastName;
+        final String email;
+        final String phone;
+        final String street;
+        final String city;
+        final String country;
+        final String description;
+
+        StringDto(int i) {
+            this.firstName = "first-" + i;
+            this.lastName = "last-" + i;
+            this.email = "user" + i + "@example.com";
+            this.phone = "+1-555-" + (1000 + i % 9000);
+            this.street = i + " Elm Street";
+            this.city = "city-" + i % 100;
+            this.country = "country-" + i % 10;
+            this.description = "A somewhat longer free text description for entry number " + i;
+        }
+    }
+
+    static final class Primitives {
+        boolean flag;
+        byte b;
+        char c;
+        short s;
+        int i;
+        float f;
+        long l;
+        double d;
+    }
+
+    static class Level1 {
+        byte a;
+        Object first;
+    }
+
+    static class Level2 extends Level1 {
+        int b;
+        Object second;
+    }
+
+    static final class Level3 extends Level2 {
+        short c;
+        long d;
+        Object third;
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.benchmarks;
+
+import org.ehcache.sizeof.SizeOf;
+import org.ehcache.sizeof.filters.TypeFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@code deepSizeOf} calls on a single {@link SizeOf}, filtering a type, shared by all threads,
+ * each sizing its own graph. Running {@link #main(String[])} measures it for 1 thread up to twice as many threads as there
+ * are cores, and reports how the throughput scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djdk.attach.allowAttachSelf=true")
+public class ScalingBenchmark {
+
+    private SizeOf sizeOf;
+
+    @State(Scope.Thread)
+    public static class Graph {
+        Object root;
+
+        @Setup
+        public void setUp() {
+            root = Graphs.pojoMap(100);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        final TypeFilter filter = new TypeFilter();
+        filter.addClass(Thread.class, false);
+        sizeOf = SizeOf.newInstance(filter);
+    }
+
+    @Benchmark
+    public long deepSizeOf(Graph graph) {
+        return sizeOf.deepSizeOf(graph.root);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final CommandLineOptions options = new CommandLineOptions(args);
+        final int cores = Runtime.getRuntime().availableProcessors();
+        final List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < 2 * cores; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(2 * cores);
+
+        final List<Double> throughputs = new ArrayList<>();
+        for (int threads : threadCounts) {
+            final Collection<RunResult> results = new Runner(new OptionsBuilder().parent(options)
+                .include(ScalingBenchmark.class.getName() + ".deepSizeOf").threads(threads).build()).run();
+            throughputs.add(results.iterator().next().getPrimaryResult().getScore());
+        }
+
+        System.out.printf("%nScaling of deepSizeOf on a shared SizeOf, %d cores%n", cores);
+        System.out.printf("%8s %14s %10s %12s%n", "threads", "ops/ms", "speedup", "efficiency");
+        for (int i = 0; i < threadCounts.size(); i++) {
+            final double speedup = throughputs.get(i) / throughputs.get(0);
+            System.out.printf("%8d %14.3f %10.2f %11.0f%%%n", threadCounts.get(i), throughputs.get(i), speedup,
+                100 * speedup / Math.min(threadCounts.get(i), cores));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.benchmarks;
+
+import org.ehcache.sizeof.SizeOf;
+import org.ehcache.sizeof.impl.AgentSizeOf;
+import org.ehcache.sizeof.impl.ReflectionSizeOf;
+import org.ehcache.sizeof.impl.UnsafeSizeOf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares how each engine measures the shallow size of instances of various class shapes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djdk.attach.allowAttachSelf=true")
+public class ShallowSizeOfBenchmark {
+
+    @Param({ "agent", "unsafe", "reflection" })
+    public String engine;
+
+    @Param({ "empty", "primitives", "references", "deepHierarchy", "array" })
+    public String shape;
+
+    private SizeOf sizeOf;
+    private Object instance;
+
+    @Setup
+    public void setUp() {
+        switch (engine) {
+            case "agent":
+                sizeOf = new AgentSizeOf();
+                break;
+            case "unsafe":
+                sizeOf = new UnsafeSizeOf();
+                break;
+            case "reflection":
+                sizeOf = new ReflectionSizeOf();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown engine " + engine);
+        }
+        instance = Graphs.shape(shape);
+    }
+
+    @Benchmark
+    public long sizeOf() {
+        return sizeOf.sizeOf(instance);
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.benchmarks;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import org.ehcache.sizeof.impl.ObjectLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Measures, in fresh JVMs, what detecting the JVM data model costs: reading a VM option through the platform MBean
+ * server, as done previously, against reading it from the {@code HotSpotDiagnosticMXBean} directly, as well as the whole
+ * detection of the current {@link ObjectLayout}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StartupBenchmark {
+
+    @Benchmark
+    public Object platformMBeanServer() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName beanName = ObjectName.getInstance("com.sun.management:type=HotSpotDiagnostic");
+        Object vmOption = server.invoke(beanName, "getVMOption", new Object[] { "UseCompressedOops" }, new String[] { "java.lang.String" });
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if ("ConcurrentMarkSweep".equals(bean.getName())) {
+                return bean;
+            }
+        }
+        return ((CompositeData)vmOption).get("value");
+    }
+
+    @Benchmark
+    public Object diagnosticMXBean() {
+        HotSpotDiagnosticMXBean bean = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        try {
+            return bean.getVMOption("UseConcMarkSweepGC").getValue();
+        } catch (IllegalArgumentException e) {
+            // no CMS on JDK 14 and later
+            return bean.getVMOption("UseCompressedOops").getValue();
+        }
+    }
+
+    @Benchmark
+    public Object objectLayout() {
+        return ObjectLayout.CURRENT_LAYOUT;
+    }
+}
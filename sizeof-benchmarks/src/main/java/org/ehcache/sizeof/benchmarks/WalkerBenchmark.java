@@ -0,0 +1,85 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.benchmarks;
+
+import org.ehcache.sizeof.SizeOf;
+import org.ehcache.sizeof.VisitorListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the walk loop specialized for calls without a {@link VisitorListener} to the generic one, which a no-op
+ * listener forces, on a map of lists of strings. The specialized loop is picked as the {@link SizeOf} is created, with
+ * or without the flyweight lookup depending on {@code bypassFlyweight}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class WalkerBenchmark {
+
+    private static final VisitorListener NO_OP_LISTENER = (object, size) -> { };
+
+    @Param({ "100", "10000" })
+    public int entries;
+
+    @Param({ "true", "false" })
+    public boolean bypassFlyweight;
+
+    private SizeOf sizeOf;
+    private Map<String, List<String>> graph;
+
+    @Setup
+    public void setUp() {
+        sizeOf = SizeOf.newInstance(bypassFlyweight, true);
+        graph = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+            final List<String> values = new ArrayList<>();
+            for (int j = 0; j < 4; j++) {
+                values.add("value-" + i + "-" + j);
+            }
+            graph.put("key-" + i, values);
+        }
+    }
+
+    @Benchmark
+    public long specialized() {
+        return sizeOf.deepSizeOf(graph);
+    }
+
+    @Benchmark
+    public long generic() {
+        return sizeOf.deepSizeOf(NO_OP_LISTENER, graph);
+    }
+}
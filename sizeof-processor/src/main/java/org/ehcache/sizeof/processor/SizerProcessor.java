@@ -0,0 +1,242 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates an {@code org.ehcache.sizeof.Sizer} for each class annotated with {@code org.ehcache.sizeof.annotations.Sized},
+ * reading its reference fields directly, and registers them all in {@code META-INF/services/org.ehcache.sizeof.Sizer}.
+ * The sizer for {@code com.acme.Outer.Inner} is generated as {@code com.acme.Outer_Inner_Sizer}.
+ */
+@SupportedAnnotationTypes(SizerProcessor.SIZED)
+public final class SizerProcessor extends AbstractProcessor {
+
+    static final String SIZED = "org.ehcache.sizeof.annotations.Sized";
+    private static final String SIZER = "org.ehcache.sizeof.Sizer";
+    private static final String SERVICE_FILE = "META-INF/services/" + SIZER;
+
+    private final Set<String> sizers = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!sizers.isEmpty()) {
+                writeServiceFile();
+            }
+            return false;
+        }
+        final TypeElement sized = processingEnv.getElementUtils().getTypeElement(SIZED);
+        if (sized == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(sized)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error("@Sized only applies to classes", element);
+            } else if (isAccessible((TypeElement)element)) {
+                final List<VariableElement> fields = getReferenceFields((TypeElement)element);
+                if (fields != null) {
+                    generateSizer((TypeElement)element, fields);
+                }
+            }
+        }
+        // @Sized is only meant for this processor
+        return true;
+    }
+
+    private boolean isAccessible(final TypeElement type) {
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL
+            && !(type.getNestingKind() == NestingKind.MEMBER && type.getModifiers().contains(Modifier.STATIC))) {
+            error("@Sized classes need to be top level or static nested classes", type);
+            return false;
+        }
+        for (Element current = type; current instanceof TypeElement; current = current.getEnclosingElement()) {
+            if (current.getModifiers().contains(Modifier.PRIVATE)) {
+                error("@Sized classes, and the classes they're nested in, can't be private", type);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The non static, non primitive, fields of the type and its superclasses, or null if one of them can't be read directly
+     */
+    private List<VariableElement> getReferenceFields(final TypeElement type) {
+        final PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        final List<VariableElement> fields = new ArrayList<>();
+        boolean accessible = true;
+        for (TypeElement current = type; current != null; current = getSuperclass(current)) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                if (field.getModifiers().contains(Modifier.STATIC) || field.asType().getKind().isPrimitive()) {
+                    continue;
+                }
+                final boolean samePackage = processingEnv.getElementUtils().getPackageOf(current).equals(pkg);
+                if (field.getModifiers().contains(Modifier.PRIVATE)
+                    || !(samePackage || current.getModifiers().contains(Modifier.PUBLIC) && field.getModifiers().contains(Modifier.PUBLIC))) {
+                    error("Field '" + field.getSimpleName() + "' of " + current.getQualifiedName()
+                          + " can't be read from package " + pkg.getQualifiedName() + ", @Sized classes need all their"
+                          + " reference fields, inherited ones included, to be accessible from their package", type);
+                    accessible = false;
+                }
+                fields.add(field);
+            }
+        }
+        return accessible ? fields : null;
+    }
+
+    private TypeElement getSuperclass(final TypeElement type) {
+        final TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (TypeElement)processingEnv.getTypeUtils().asElement(superclass);
+    }
+
+    private void generateSizer(final TypeElement type, final List<VariableElement> fields) {
+        final String pkg = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        final String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        final String simpleName = (pkg.isEmpty() ? binaryName : binaryName.substring(pkg.length() + 1)).replace('$', '_') + "_Sizer";
+        final String qualifiedName = pkg.isEmpty() ? simpleName : pkg + "." + simpleName;
+        final String typeName = type.getQualifiedName().toString();
+
+        try {
+            final JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+            try (PrintWriter out = new PrintWriter(file.openWriter())) {
+                if (!pkg.isEmpty()) {
+                    out.println("package " + pkg + ";");
+                    out.println();
+                }
+                out.println("/**");
+                out.println(" * Reads the references held by {@link " + typeName + "} instances, generated by "
+                            + SizerProcessor.class.getName());
+                out.println(" */");
+                out.println("@SuppressWarnings({\"rawtypes\", \"unchecked\"})");
+                out.println("public final class " + simpleName + " implements " + SIZER + "<" + typeName + "> {");
+                out.println();
+                out.println("    private static final java.util.Collection<java.lang.reflect.Field> FIELDS =");
+                out.println("        java.util.Collections.unmodifiableList(java.util.Arrays.asList(");
+                for (int i = 0; i < fields.size(); i++) {
+                    final VariableElement field = fields.get(i);
+                    out.println("            field(" + declaringType(field) + ".class, \"" + field.getSimpleName() + "\")"
+                                + (i < fields.size() - 1 ? "," : ""));
+                }
+                out.println("        ));");
+                out.println();
+                out.println("    @Override");
+                out.println("    public Class<" + typeName + "> type() {");
+                out.println("        return " + typeName + ".class;");
+                out.println("    }");
+                out.println();
+                out.println("    @Override");
+                out.println("    public java.util.Collection<java.lang.reflect.Field> fields() {");
+                out.println("        return FIELDS;");
+                out.println("    }");
+                out.println();
+                out.println("    @Override");
+                out.println("    public void references(final " + typeName + " instance, "
+                            + "final java.util.function.Consumer<Object> references) {");
+                for (VariableElement field : fields) {
+                    final String owner = declaringType(field);
+                    final String read = owner.equals(typeName) ? "instance" : "((" + owner + ")instance)";
+                    out.println("        references.accept(" + read + "." + field.getSimpleName() + ");");
+                }
+                out.println("    }");
+                out.println();
+                out.println("    private static java.lang.reflect.Field field(final Class<?> type, final String name) {");
+                out.println("        try {");
+                out.println("            return type.getDeclaredField(name);");
+                out.println("        } catch (NoSuchFieldException e) {");
+                out.println("            throw new IllegalStateException(\"" + simpleName + " is out of sync with \" + type.getName(), e);");
+                out.println("        }");
+                out.println("    }");
+                out.println("}");
+            }
+            sizers.add(qualifiedName);
+        } catch (IOException e) {
+            error("Couldn't generate " + qualifiedName + ": " + e, type);
+        }
+    }
+
+    private static String declaringType(final VariableElement field) {
+        return ((TypeElement)field.getEnclosingElement()).getQualifiedName().toString();
+    }
+
+    private void writeServiceFile() {
+        try {
+            final FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        sizers.add(line.trim());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // no sizers registered by a previous compilation
+        }
+        try {
+            final FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Writer out = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String sizer : sizers) {
+                    out.write(sizer);
+                    out.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Couldn't write " + SERVICE_FILE + ": " + e);
+        }
+    }
+
+    private void error(final String message, final Element element) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
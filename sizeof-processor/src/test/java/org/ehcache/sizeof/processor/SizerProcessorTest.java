@@ -0,0 +1,172 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.processor;
+
+import org.ehcache.sizeof.Sizer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class SizerProcessorTest {
+
+    @Rule
+    public final TemporaryFolder output = new TemporaryFolder();
+
+    private final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+    @Test
+    public void testGeneratesSizersReadingReferenceFields() throws Exception {
+        assertThat(compile(source("com.acme.Value",
+            "package com.acme;",
+            "@org.ehcache.sizeof.annotations.Sized",
+            "public class Value extends Base {",
+            "    Object name;",
+            "    int[] data;",
+            "    long primitive;",
+            "    static Object shared;",
+            "    @org.ehcache.sizeof.annotations.Sized",
+            "    public static class Inner {",
+            "        Value outer;",
+            "    }",
+            "}"), source("com.acme.Base",
+            "package com.acme;",
+            "public class Base {",
+            "    protected Object inherited;",
+            "}")), is(true));
+
+        assertThat(lines("META-INF/services/org.ehcache.sizeof.Sizer"),
+            is(Arrays.asList("com.acme.Value_Inner_Sizer", "com.acme.Value_Sizer")));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { output.getRoot().toURI().toURL() },
+            getClass().getClassLoader())) {
+            final Class<?> type = loader.loadClass("com.acme.Value");
+            final Object value = type.newInstance();
+            set(type, value, "name", "name");
+            set(type, value, "data", new int[0]);
+            set(type.getSuperclass(), value, "inherited", 42);
+
+            @SuppressWarnings("unchecked")
+            final Sizer<Object> sizer = (Sizer<Object>)loader.loadClass("com.acme.Value_Sizer").newInstance();
+            assertThat(sizer.type(), is((Object)type));
+            final List<String> fields = new ArrayList<>();
+            for (Field field : sizer.fields()) {
+                fields.add(field.getName());
+            }
+            assertThat(fields, is(Arrays.asList("name", "data", "inherited")));
+            final List<Object> references = new ArrayList<>();
+            sizer.references(value, references::add);
+            assertThat(references.size(), is(3));
+            assertThat(references.get(0), is((Object)"name"));
+            assertThat(references.get(2), is((Object)42));
+        }
+    }
+
+    @Test
+    public void testClaimsTheAnnotation() throws Exception {
+        assertThat(compile(source("com.acme.Claimed",
+            "package com.acme;",
+            "@org.ehcache.sizeof.annotations.Sized",
+            "public class Claimed {",
+            "    Object value;",
+            "}")), is(true));
+        assertThat(messages(), not(hasItem(containsString("No processor claimed"))));
+    }
+
+    @Test
+    public void testRejectsFieldsNotReadableFromThePackage() throws Exception {
+        assertThat(compile(source("com.acme.Hidden",
+            "package com.acme;",
+            "@org.ehcache.sizeof.annotations.Sized",
+            "public class Hidden {",
+            "    private Object secret;",
+            "}")), is(false));
+        assertThat(messages(), hasItem(containsString("Field 'secret' of com.acme.Hidden can't be read from package com.acme")));
+    }
+
+    @Test
+    public void testRejectsInnerClasses() throws Exception {
+        assertThat(compile(source("com.acme.Outer",
+            "package com.acme;",
+            "public class Outer {",
+            "    @org.ehcache.sizeof.annotations.Sized",
+            "    class Inner {",
+            "    }",
+            "}")), is(false));
+        assertThat(messages(), hasItem(containsString("@Sized classes need to be top level or static nested classes")));
+    }
+
+    private boolean compile(final JavaFileObject... sources) {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final List<String> options = Arrays.asList("-Xlint:processing", "-processor", SizerProcessor.class.getName(),
+            "-classpath", System.getProperty("java.class.path"),
+            "-d", output.getRoot().getPath(), "-s", output.getRoot().getPath());
+        return compiler.getTask(null, null, diagnostics, options, null, Arrays.asList(sources)).call();
+    }
+
+    private List<String> messages() {
+        final List<String> messages = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            messages.add(diagnostic.getMessage(null));
+        }
+        return messages;
+    }
+
+    private List<String> lines(final String resource) throws Exception {
+        final File file = new File(output.getRoot(), resource);
+        return file.exists() ? Files.readAllLines(file.toPath(), StandardCharsets.UTF_8) : Collections.<String>emptyList();
+    }
+
+    private static void set(final Class<?> type, final Object instance, final String name, final Object value) throws Exception {
+        final Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(instance, value);
+    }
+
+    private static JavaFileObject source(final String className, final String... lines) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension),
+            JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+                return String.join("\n", lines);
+            }
+        };
+    }
+}
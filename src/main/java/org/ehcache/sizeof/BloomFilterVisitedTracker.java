@@ -0,0 +1,145 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import java.util.Arrays;
+
+/**
+ * Tracks visited objects in Bloom filters on the heap, keyed on the identity hash code of the object and of its class.
+ * Filters are allocated as the walk goes: a first one of 64KB, then, each time the last one holds an object per 32 of its
+ * bits, one four times as large, up to the configured size. The filter of that size takes all the objects still to come.
+ * Memory use is bounded regardless of the amount of objects visited, to a third more than the configured size, and small
+ * walks only allocate small filters, at the cost of some objects being wrongly considered as visited already: either
+ * because of a false positive of one of the filters, or because two objects of the same class share the same identity
+ * hash code.
+ */
+final class BloomFilterVisitedTracker implements ObjectGraphWalker.VisitedTracker {
+
+    private static final int HASH_FUNCTIONS = 4;
+    private static final long MIN_BYTES = 64;
+    private static final long FIRST_FILTER_BYTES = 64 * 1024;
+    private static final int GROWTH = 4;
+    private static final int BITS_PER_OBJECT = 32;
+
+    private final long maxBytes;
+    private long[][] filters = new long[0][];
+    private long[] counts = new long[0];
+    private long allocatedBytes;
+    private long[] current;
+    private long currentMask;
+    private long currentCapacity;
+    private long visited;
+
+    /**
+     * Constructor
+     *
+     * @param bytes the size of the largest filter, rounded down to a power of two
+     */
+    BloomFilterVisitedTracker(final long bytes) {
+        this.maxBytes = Long.highestOneBit(Math.max(MIN_BYTES, Math.min(bytes, 1L << 30)));
+        addFilter(Math.min(FIRST_FILTER_BYTES, maxBytes));
+    }
+
+    @Override
+    public boolean add(final Object object) {
+        final long hash = mix(((long)System.identityHashCode(object) << 32) | (System.identityHashCode(object.getClass()) & 0xffffffffL));
+        final long h1 = hash & 0xffffffffL;
+        final long h2 = hash >>> 32 | 1;
+        for (long[] filter : filters) {
+            if (contains(filter, h1, h2)) {
+                return false;
+            }
+        }
+        if (counts[counts.length - 1] >= currentCapacity) {
+            grow();
+        }
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            final long bit = (h1 + i * h2) & currentMask;
+            current[(int)(bit >>> 6)] |= 1L << bit;
+        }
+        counts[counts.length - 1]++;
+        visited++;
+        return true;
+    }
+
+    @Override
+    public long visitedCount() {
+        return visited;
+    }
+
+    /**
+     * The expected rate of false positives for the objects visited so far
+     *
+     * @return the probability of an object not yet visited to be considered as visited
+     */
+    double falsePositiveRate() {
+        double notFalsePositive = 1;
+        for (int i = 0; i < filters.length; i++) {
+            final double bits = (double)filters[i].length * Long.SIZE;
+            notFalsePositive *= 1 - Math.pow(1 - Math.exp(-HASH_FUNCTIONS * counts[i] / bits), HASH_FUNCTIONS);
+        }
+        return 1 - notFalsePositive;
+    }
+
+    /**
+     * The amount of memory allocated to track objects so far
+     *
+     * @return the size in bytes of the filters
+     */
+    long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    private void grow() {
+        final long previous = (long)current.length * Long.BYTES;
+        if (previous >= maxBytes) {
+            currentCapacity = Long.MAX_VALUE;
+        } else {
+            addFilter(Math.min(previous * GROWTH, maxBytes));
+        }
+    }
+
+    private void addFilter(final long bytes) {
+        current = new long[(int)(bytes / Long.BYTES)];
+        currentMask = bytes * Byte.SIZE - 1;
+        currentCapacity = bytes < maxBytes ? bytes * Byte.SIZE / BITS_PER_OBJECT : Long.MAX_VALUE;
+        allocatedBytes += bytes;
+        filters = Arrays.copyOf(filters, filters.length + 1);
+        filters[filters.length - 1] = current;
+        counts = Arrays.copyOf(counts, counts.length + 1);
+    }
+
+    private static boolean contains(final long[] filter, final long h1, final long h2) {
+        final long mask = (long)filter.length * Long.SIZE - 1;
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            final long bit = (h1 + i * h2) & mask;
+            if ((filter[(int)(bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
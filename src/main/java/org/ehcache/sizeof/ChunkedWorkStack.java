@@ -0,0 +1,188 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * The objects left to visit during a walk, held in a linked list of fixed size chunks rather than one contiguous array, so
+ * that long chains of objects don't require large allocations and copies as the stack grows. Each thread keeps the slots of
+ * a single chunk around for its next walk: a plain {@code Object[]}, which doesn't pin the class loader of this library
+ * the way a pool of its own types held in a {@link ThreadLocal} would.
+ * Objects are popped in LIFO order (depth first), or FIFO order (breadth first) if requested.
+ */
+final class ChunkedWorkStack implements Consumer<Object> {
+
+    static final int CHUNK_SIZE = 1024;
+
+    private static final ThreadLocal<Object[]> RECYCLED_SLOTS = new ThreadLocal<>();
+
+    private final boolean breadthFirst;
+
+    /**
+     * The chunk objects are popped from. When depth first, also the one they are pushed to, linking to the previous chunk
+     */
+    private Chunk head;
+    private int headIndex;
+    /**
+     * When breadth first, the chunk objects are pushed to, the chunks linking to the next one from head to tail
+     */
+    private Chunk tail;
+    private int tailIndex;
+
+    /**
+     * Constructor
+     *
+     * @param breadthFirst whether objects are to be popped in the order they were pushed
+     */
+    ChunkedWorkStack(final boolean breadthFirst) {
+        this.breadthFirst = breadthFirst;
+        this.head = acquire();
+        this.tail = head;
+    }
+
+    /**
+     * Adds an object to visit
+     *
+     * @param object the object, not null
+     */
+    void push(final Object object) {
+        if (breadthFirst) {
+            if (tailIndex == CHUNK_SIZE) {
+                final Chunk chunk = acquire();
+                tail.link = chunk;
+                tail = chunk;
+                tailIndex = 0;
+            }
+            tail.slots[tailIndex++] = object;
+        } else {
+            if (headIndex == CHUNK_SIZE) {
+                final Chunk chunk = acquire();
+                chunk.link = head;
+                head = chunk;
+                headIndex = 0;
+            }
+            head.slots[headIndex++] = object;
+        }
+    }
+
+    /**
+     * Adds an object to visit, unless null
+     *
+     * @param object the object
+     */
+    @Override
+    public void accept(final Object object) {
+        if (object != null) {
+            push(object);
+        }
+    }
+
+    /**
+     * Removes the next object to visit
+     *
+     * @return the object
+     * @throws NoSuchElementException if empty
+     */
+    Object pop() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        final Object object;
+        if (breadthFirst) {
+            if (headIndex == CHUNK_SIZE) {
+                final Chunk previous = head;
+                head = head.link;
+                headIndex = 0;
+                recycle(previous);
+            }
+            object = head.slots[headIndex];
+            head.slots[headIndex++] = null;
+            if (head == tail && headIndex == tailIndex) {
+                headIndex = 0;
+                tailIndex = 0;
+            }
+        } else {
+            if (headIndex == 0) {
+                final Chunk previous = head;
+                head = head.link;
+                headIndex = CHUNK_SIZE;
+                recycle(previous);
+            }
+            object = head.slots[--headIndex];
+            head.slots[headIndex] = null;
+        }
+        return object;
+    }
+
+    /**
+     * Whether there are objects left to visit
+     *
+     * @return true if empty
+     */
+    boolean isEmpty() {
+        if (breadthFirst) {
+            return head == tail && headIndex == tailIndex;
+        }
+        return headIndex == 0 && head.link == null;
+    }
+
+    /**
+     * Hands a chunk back for reuse by later walks on this thread, emptying it first if needed, e.g. when a walk got cut
+     * short. The stack can't be used afterwards.
+     */
+    void release() {
+        if (!isEmpty()) {
+            Arrays.fill(head.slots, null);
+        }
+        recycle(head);
+        head = null;
+        tail = null;
+    }
+
+    private static Chunk acquire() {
+        final Object[] slots = RECYCLED_SLOTS.get();
+        if (slots == null) {
+            return new Chunk(new Object[CHUNK_SIZE]);
+        }
+        RECYCLED_SLOTS.set(null);
+        return new Chunk(slots);
+    }
+
+    /**
+     * Keeps the slots of an empty chunk for this thread, unless some already are
+     */
+    private static void recycle(final Chunk chunk) {
+        if (RECYCLED_SLOTS.get() == null) {
+            RECYCLED_SLOTS.set(chunk.slots);
+        }
+    }
+
+    /**
+     * A fixed size segment of the stack
+     */
+    private static final class Chunk {
+        private final Object[] slots;
+        private Chunk link;
+
+        Chunk(final Object[] slots) {
+            this.slots = slots;
+        }
+    }
+}
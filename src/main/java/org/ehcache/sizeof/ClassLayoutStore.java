@@ -0,0 +1,389 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import org.ehcache.sizeof.impl.ObjectLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persists the shallow size of classes across restarts, in a file memory-mapped lazily on first use, so that a restarted
+ * JVM doesn't need to measure them all over again.
+ * <p>
+ * Entries are keyed by the engine measuring, the class name, a hint of its class loader and a fingerprint of where the
+ * class got loaded from (the jar's size and modification time, or the runtime's version for JDK classes). The whole
+ * file is discarded if written under an {@link ObjectLayout} other than the current one. Classes which names aren't
+ * stable across restarts (lambdas, hidden classes, proxies without code source) are never persisted.
+ * New entries are written out, merged with the loaded ones, when the JVM shuts down.
+ */
+final class ClassLayoutStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClassLayoutStore.class);
+    private static final String LAYOUT_STORE = "org.ehcache.sizeof.layoutStore";
+    private static final String LAYOUT_STORE_PATH = System.getProperty(LAYOUT_STORE);
+    private static final int MAGIC = 0x534c5354;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = Integer.BYTES * 2 + Long.BYTES + Integer.BYTES * 2;
+    private static final String DIRECTORY = "";
+    private static final String JDK_FINGERPRINT = "jdk:" + System.getProperty("java.vm.vendor") + ":"
+                                                  + System.getProperty("java.runtime.version");
+
+    private final Path path;
+    private final long layoutFingerprint;
+    private final Map<String, String> codeSourceFingerprints = new ConcurrentHashMap<>();
+    private final Map<String, Long> added = new ConcurrentHashMap<>();
+    private volatile Loaded loaded;
+
+    ClassLayoutStore(final Path path, final long layoutFingerprint) {
+        this.path = path;
+        this.layoutFingerprint = layoutFingerprint;
+    }
+
+    /**
+     * The store configured through the {@code org.ehcache.sizeof.layoutStore} system property
+     *
+     * @return the store, or null if none is configured
+     */
+    static ClassLayoutStore shared() {
+        return LAYOUT_STORE_PATH == null ? null : Shared.STORE;
+    }
+
+    /**
+     * The shallow size of a class, as persisted or recorded
+     *
+     * @param engine the engine measuring
+     * @param type   the class
+     * @return the size, or null if unknown
+     */
+    Long shallowSize(final String engine, final Class<?> type) {
+        final String key = key(engine, type);
+        if (key == null) {
+            return null;
+        }
+        final Long size = added.get(key);
+        return size != null ? size : loaded().get(key);
+    }
+
+    /**
+     * Records the shallow size of a class, to be persisted
+     *
+     * @param engine the engine that measured it
+     * @param type   the class
+     * @param size   its shallow size
+     */
+    void record(final String engine, final Class<?> type, final long size) {
+        final String key = key(engine, type);
+        if (key != null) {
+            added.put(key, size);
+        }
+    }
+
+    /**
+     * Writes the persisted entries, along with the recorded ones, atomically replacing the file
+     *
+     * @throws IOException if the file couldn't be written
+     */
+    synchronized void persist() throws IOException {
+        if (added.isEmpty()) {
+            return;
+        }
+        final Map<String, Long> entries = new HashMap<>(loaded().entries());
+        entries.putAll(added);
+        final Path parent = path.toAbsolutePath().getParent();
+        if (parent == null) {
+            throw new IOException(path + " isn't a file path");
+        }
+        Files.createDirectories(parent);
+
+        // at most half full, so that lookups only probe a few slots
+        final int slots = Integer.highestOneBit(Math.max(1, entries.size()) * 4 - 1);
+        final int[] table = new int[slots];
+        final List<byte[]> keys = new ArrayList<>(entries.size());
+        final List<Long> sizes = new ArrayList<>(entries.size());
+        int position = HEADER_BYTES + slots * Integer.BYTES;
+        for (Map.Entry<String, Long> entry : entries.entrySet()) {
+            final byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            int slot = entry.getKey().hashCode() & (slots - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            table[slot] = position;
+            keys.add(key);
+            sizes.add(entry.getValue());
+            position += Integer.BYTES * 2 + key.length + Long.BYTES;
+        }
+
+        final Path tmp = Files.createTempFile(parent, "sizeof-layouts", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(layoutFingerprint);
+                out.writeInt(entries.size());
+                out.writeInt(slots);
+                for (int entry : table) {
+                    out.writeInt(entry);
+                }
+                for (int i = 0; i < keys.size(); i++) {
+                    final byte[] key = keys.get(i);
+                    out.writeInt(new String(key, StandardCharsets.UTF_8).hashCode());
+                    out.writeInt(key.length);
+                    out.write(key);
+                    out.writeLong(sizes.get(i));
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Loaded loaded() {
+        Loaded current = loaded;
+        if (current == null) {
+            synchronized (this) {
+                current = loaded;
+                if (current == null) {
+                    loaded = current = load();
+                }
+            }
+        }
+        return current;
+    }
+
+    private Loaded load() {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                LOG.warn("Ignoring {}, which isn't a class layout store", path);
+                return Loaded.EMPTY;
+            }
+            if (buffer.getLong() != layoutFingerprint) {
+                LOG.info("Ignoring {}, written under a different object layout", path);
+                return Loaded.EMPTY;
+            }
+            final int count = buffer.getInt();
+            final int slots = buffer.getInt();
+            if (count < 0 || Integer.bitCount(slots) != 1 || (long)HEADER_BYTES + (long)slots * Integer.BYTES > buffer.limit()) {
+                LOG.warn("Ignoring {}, which is corrupt", path);
+                return Loaded.EMPTY;
+            }
+            LOG.debug("Mapped {} class layouts from {}", count, path);
+            return new Loaded(buffer, count, slots);
+        } catch (NoSuchFileException e) {
+            return Loaded.EMPTY;
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Ignoring class layout store {}: {}", path, e.toString());
+            return Loaded.EMPTY;
+        }
+    }
+
+    private String key(final String engine, final Class<?> type) {
+        final String name = type.getName();
+        if (name.contains("$$Lambda") || name.indexOf('/') >= 0) {
+            return null;
+        }
+        final ClassLoader loader = type.getClassLoader();
+        final String fingerprint;
+        if (loader == null) {
+            fingerprint = JDK_FINGERPRINT;
+        } else {
+            fingerprint = codeSourceFingerprint(type);
+            if (fingerprint == null) {
+                return null;
+            }
+        }
+        return engine + '|' + (loader == null ? "" : loader.getClass().getName()) + '|' + name + '|' + fingerprint;
+    }
+
+    private String codeSourceFingerprint(final Class<?> type) {
+        final ProtectionDomain domain = type.getProtectionDomain();
+        final CodeSource codeSource = domain == null ? null : domain.getCodeSource();
+        final URL location = codeSource == null ? null : codeSource.getLocation();
+        if (location == null) {
+            return null;
+        }
+        final String url = location.toString();
+        String fingerprint = codeSourceFingerprints.get(url);
+        if (fingerprint == null) {
+            final BasicFileAttributes attributes = attributes(url);
+            if (attributes == null) {
+                return null;
+            }
+            fingerprint = attributes.isDirectory() ? DIRECTORY : fingerprint(attributes);
+            codeSourceFingerprints.put(url, fingerprint);
+        }
+        if (!fingerprint.equals(DIRECTORY)) {
+            return fingerprint;
+        }
+
+        // classes directory: each class file can change on its own, a loaded class doesn't though
+        final String classFile = (url.endsWith("/") ? url : url + '/') + type.getName().replace('.', '/') + ".class";
+        String classFingerprint = codeSourceFingerprints.get(classFile);
+        if (classFingerprint == null) {
+            final BasicFileAttributes attributes = attributes(classFile);
+            if (attributes == null || !attributes.isRegularFile()) {
+                return null;
+            }
+            classFingerprint = fingerprint(attributes);
+            codeSourceFingerprints.put(classFile, classFingerprint);
+        }
+        return classFingerprint;
+    }
+
+    private static BasicFileAttributes attributes(final String url) {
+        try {
+            return Files.readAttributes(Paths.get(new URL(url).toURI()), BasicFileAttributes.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String fingerprint(final BasicFileAttributes attributes) {
+        return attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * A fingerprint of the current object layout
+     */
+    static long currentLayoutFingerprint() {
+        final ObjectLayout layout = ObjectLayout.CURRENT_LAYOUT;
+        long fingerprint = layout.getJvmDescription().hashCode();
+        for (long value : new long[] { layout.getPointerSize(), layout.getJavaPointerSize(), layout.getObjectHeaderSize(),
+            layout.getArrayHeaderSize(), layout.getObjectAlignment(), layout.getMinimumObjectSize(),
+            layout.getFieldOffsetAdjustment(), layout.getAgentSizeOfAdjustment(), layout.hasCompactFieldLayout() ? 1 : 0 }) {
+            fingerprint = fingerprint * 31 + value;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * The mapped file: a table of {@code slots} entry positions, indexed by the hash of their key, followed by the entries
+     * themselves, each the hash of its key, the key's length and UTF-8 bytes, and the size
+     */
+    private static final class Loaded {
+
+        static final Loaded EMPTY = new Loaded(ByteBuffer.allocate(HEADER_BYTES), 0, 0);
+
+        private final ByteBuffer buffer;
+        private final int count;
+        private final int slots;
+
+        Loaded(final ByteBuffer buffer, final int count, final int slots) {
+            this.buffer = buffer;
+            this.count = count;
+            this.slots = slots;
+        }
+
+        Long get(final String key) {
+            if (count == 0) {
+                return null;
+            }
+            final int hash = key.hashCode();
+            byte[] bytes = null;
+            int slot = hash & (slots - 1);
+            for (int probes = 0; probes < slots; probes++) {
+                final int position = buffer.getInt(HEADER_BYTES + slot * Integer.BYTES);
+                if (position <= 0 || position > buffer.limit() - Integer.BYTES * 2) {
+                    return null;
+                }
+                if (buffer.getInt(position) == hash) {
+                    if (bytes == null) {
+                        bytes = key.getBytes(StandardCharsets.UTF_8);
+                    }
+                    if (matches(position + Integer.BYTES, bytes)) {
+                        return buffer.getLong(position + Integer.BYTES * 2 + bytes.length);
+                    }
+                }
+                slot = (slot + 1) & (slots - 1);
+            }
+            return null;
+        }
+
+        private boolean matches(final int position, final byte[] key) {
+            if (buffer.getInt(position) != key.length || position + Integer.BYTES + key.length + Long.BYTES > buffer.limit()) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (buffer.get(position + Integer.BYTES + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Decodes all entries, only needed to write them out again
+         */
+        Map<String, Long> entries() {
+            final Map<String, Long> entries = new HashMap<>(count * 2);
+            final ByteBuffer entry = buffer.duplicate();
+            entry.position(HEADER_BYTES + slots * Integer.BYTES);
+            try {
+                for (int i = 0; i < count; i++) {
+                    entry.getInt();
+                    final byte[] key = new byte[entry.getInt()];
+                    entry.get(key);
+                    entries.put(new String(key, StandardCharsets.UTF_8), entry.getLong());
+                }
+            } catch (RuntimeException e) {
+                LOG.warn("Dropping the class layouts past entry {} of a corrupt store", entries.size());
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * Lazily opens the shared store, persisting it on shutdown
+     */
+    private static final class Shared {
+
+        static final ClassLayoutStore STORE = new ClassLayoutStore(Paths.get(LAYOUT_STORE_PATH), currentLayoutFingerprint());
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    STORE.persist();
+                } catch (IOException e) {
+                    LOG.warn("Couldn't persist class layouts to {}", STORE.path, e);
+                }
+            }, "sizeof-layout-store"));
+        }
+    }
+}
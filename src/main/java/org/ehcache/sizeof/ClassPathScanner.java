@@ -0,0 +1,124 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Lists the classes of packages, and of their subpackages, as found by a class loader in directories and jars
+ */
+final class ClassPathScanner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClassPathScanner.class);
+    private static final String CLASS_SUFFIX = ".class";
+
+    private ClassPathScanner() {
+        // not instantiable
+    }
+
+    /**
+     * Loads, without initializing them, the classes of a package and of its subpackages. Classes of jars without
+     * directory entries, or of other kinds of class path entries, aren't found.
+     *
+     * @param loader      the class loader to look the package up, and load the classes, with
+     * @param packageName the package
+     * @return the classes that could be loaded
+     */
+    static List<Class<?>> scan(final ClassLoader loader, final String packageName) {
+        final String path = packageName.replace('.', '/');
+        final Set<String> classNames = new TreeSet<>();
+        try {
+            final Enumeration<URL> resources = loader.getResources(path);
+            while (resources.hasMoreElements()) {
+                final URL resource = resources.nextElement();
+                try {
+                    if ("file".equals(resource.getProtocol())) {
+                        scanDirectory(Paths.get(resource.toURI()), packageName, classNames);
+                    } else if ("jar".equals(resource.getProtocol())) {
+                        scanJar(resource, path, classNames);
+                    } else {
+                        LOG.debug("Not scanning {} for classes of package {}", resource, packageName);
+                    }
+                } catch (IOException | URISyntaxException | RuntimeException e) {
+                    LOG.debug("Couldn't scan {} for classes of package {}", resource, packageName, e);
+                }
+            }
+        } catch (IOException e) {
+            LOG.debug("Couldn't look package {} up", packageName, e);
+        }
+
+        final List<Class<?>> classes = new ArrayList<>(classNames.size());
+        for (String className : classNames) {
+            try {
+                classes.add(Class.forName(className, false, loader));
+            } catch (ClassNotFoundException | LinkageError e) {
+                LOG.debug("Couldn't load {}", className, e);
+            }
+        }
+        return classes;
+    }
+
+    private static void scanDirectory(final Path directory, final String packageName, final Set<String> classNames) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.forEach(file -> {
+                final String relative = directory.relativize(file).toString().replace(file.getFileSystem().getSeparator(), ".");
+                addClassName(packageName + "." + relative, classNames);
+            });
+        }
+    }
+
+    private static void scanJar(final URL resource, final String path, final Set<String> classNames) throws IOException {
+        final URLConnection connection = resource.openConnection();
+        if (connection instanceof JarURLConnection) {
+            connection.setUseCaches(false);
+            try (JarFile jar = ((JarURLConnection)connection).getJarFile()) {
+                final Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    final String name = entries.nextElement().getName();
+                    if (name.startsWith(path + "/")) {
+                        addClassName(name.replace('/', '.'), classNames);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void addClassName(final String fileName, final Set<String> classNames) {
+        // skips package-info and module-info, as well as anything not a class
+        if (fileName.endsWith(CLASS_SUFFIX) && fileName.indexOf('-') < 0) {
+            classNames.add(fileName.substring(0, fileName.length() - CLASS_SUFFIX.length()));
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import org.ehcache.sizeof.util.WeakIdentityConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Vector;
+
+/**
+ * Caches the deep size of mutable JDK collections along with their {@code modCount}, size and a digest of the identities of
+ * their elements (keys and values for maps), so that re-sizing a collection that hasn't changed since only iterates over
+ * it, rather than walking the graphs of its elements. Structural changes, and elements replaced in place (e.g. by
+ * {@link java.util.List#set(int, Object)}, or {@link Map#put(Object, Object)} for a key already mapped), are detected, save
+ * for digest collisions. Changes to the internal state of the elements themselves are not.
+ */
+final class CollectionSizeCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CollectionSizeCache.class);
+
+    /**
+     * Per supported (exact) collection type, the fields to follow from an instance to its modCount
+     */
+    private static final Map<Class<?>, FieldReader[]> MOD_COUNT_PATHS = new HashMap<>();
+
+    static {
+        FieldReader listModCount = getField(AbstractList.class, "modCount");
+        FieldReader hashMapModCount = getField(HashMap.class, "modCount");
+        FieldReader hashSetMap = getField(HashSet.class, "map");
+        addPath(ArrayList.class, listModCount);
+        addPath(LinkedList.class, listModCount);
+        addPath(Vector.class, listModCount);
+        addPath(HashMap.class, hashMapModCount);
+        addPath(LinkedHashMap.class, hashMapModCount);
+        addPath(HashSet.class, hashSetMap, hashMapModCount);
+        addPath(LinkedHashSet.class, hashSetMap, hashMapModCount);
+        addPath(TreeMap.class, getField(TreeMap.class, "modCount"));
+        addPath(IdentityHashMap.class, getField(IdentityHashMap.class, "modCount"));
+    }
+
+    private final WeakIdentityConcurrentMap<Object, Snapshot> snapshots = new WeakIdentityConcurrentMap<>();
+
+    private static void addPath(Class<?> type, FieldReader... path) {
+        for (FieldReader field : path) {
+            if (field == null) {
+                return;
+            }
+        }
+        MOD_COUNT_PATHS.put(type, path);
+    }
+
+    private static FieldReader getField(Class<?> type, String name) {
+        try {
+            Field field = type.getDeclaredField(name);
+            long offset = UnsafeAccess.objectFieldOffset(field);
+            if (offset >= 0 || FieldAccess.trySetAccessible(field)) {
+                return new FieldReader(field, offset);
+            }
+            LOG.debug("Can't access {}.{}, re-sizing such collections will require walking them", type.getName(), name);
+            return null;
+        } catch (NoSuchFieldException | RuntimeException e) {
+            LOG.debug("Can't access {}.{}, re-sizing such collections will require walking them", type.getName(), name, e);
+            return null;
+        }
+    }
+
+    /**
+     * Whether the object is a collection whose deep size this cache can track
+     *
+     * @param obj the object
+     * @return true if supported
+     */
+    static boolean isSupported(Object obj) {
+        return obj != null && MOD_COUNT_PATHS.containsKey(obj.getClass());
+    }
+
+    /**
+     * Takes a snapshot of the current state of the collection
+     *
+     * @param collection a supported collection
+     * @return the snapshot, or null if the collection got modified while taking it
+     */
+    Snapshot snapshot(Object collection) {
+        final int modCount = readModCount(collection);
+        long digest = 0;
+        try {
+            if (collection instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>)collection).entrySet()) {
+                    digest = mix(mix(digest, entry.getKey()), entry.getValue());
+                }
+                return new Snapshot(modCount, ((Map<?, ?>)collection).size(), digest);
+            } else {
+                for (Object element : (Collection<?>)collection) {
+                    digest = mix(digest, element);
+                }
+                return new Snapshot(modCount, ((Collection<?>)collection).size(), digest);
+            }
+        } catch (ConcurrentModificationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Combines the identity of an element into the digest, depending on its position
+     */
+    private static long mix(long digest, Object element) {
+        return (digest + System.identityHashCode(element)) * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Returns the sizing recorded for the collection, if it is still in the state it was when sized
+     *
+     * @param collection a supported collection
+     * @param current    the current snapshot of the collection
+     * @return the snapshot holding the cached sizing, or null if the collection needs to be walked
+     */
+    Snapshot get(Object collection, Snapshot current) {
+        final Snapshot previous = snapshots.get(collection);
+        if (previous != null && previous.matches(current)) {
+            return previous;
+        }
+        return null;
+    }
+
+    /**
+     * Records the deep size of the collection in the state captured by the snapshot
+     *
+     * @param collection a supported collection
+     * @param snapshot   the snapshot taken before sizing
+     * @param size       the deep size measured
+     * @param objects    the amount of objects visited measuring it
+     */
+    void put(Object collection, Snapshot snapshot, long size, long objects) {
+        snapshot.deepSize = size;
+        snapshot.objects = objects;
+        snapshots.put(collection, snapshot);
+    }
+
+    private static int readModCount(Object collection) {
+        final FieldReader[] path = MOD_COUNT_PATHS.get(collection.getClass());
+        Object current = collection;
+        for (int i = 0; i < path.length - 1; i++) {
+            current = path[i].readObject(current);
+        }
+        return path[path.length - 1].readInt(current);
+    }
+
+    /**
+     * Reads a field using Unsafe if available, reflectively otherwise
+     */
+    @SuppressWarnings("restriction")
+    private static final class FieldReader {
+
+        private final Field field;
+        private final long offset;
+
+        FieldReader(final Field field, final long offset) {
+            this.field = field;
+            this.offset = offset;
+        }
+
+        Object readObject(final Object obj) {
+            if (offset >= 0) {
+                return UnsafeAccess.UNSAFE.getObject(obj, offset);
+            }
+            try {
+                return field.get(obj);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        int readInt(final Object obj) {
+            if (offset >= 0) {
+                return UnsafeAccess.UNSAFE.getInt(obj, offset);
+            }
+            try {
+                return field.getInt(obj);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * The state of a collection at the time it was sized, and what sizing it found
+     */
+    static final class Snapshot {
+
+        private final int modCount;
+        private final int size;
+        private final long digest;
+        private long deepSize;
+        private long objects;
+
+        Snapshot(final int modCount, final int size, final long digest) {
+            this.modCount = modCount;
+            this.size = size;
+            this.digest = digest;
+        }
+
+        boolean matches(Snapshot other) {
+            return modCount == other.modCount && size == other.size && digest == other.digest;
+        }
+
+        /**
+         * @return the deep size measured
+         */
+        long getDeepSize() {
+            return deepSize;
+        }
+
+        /**
+         * @return the amount of objects visited measuring it
+         */
+        long getObjects() {
+            return objects;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import java.lang.reflect.Field;
+
+/**
+ * Makes fields of arbitrary types readable through reflection.
+ * This is the Java 8 implementation; the multi-release jar holds one for Java 11 and later in {@code META-INF/versions/11}.
+ */
+final class FieldAccess {
+
+    private FieldAccess() {
+        // not instantiable
+    }
+
+    /**
+     * Makes the field accessible, if the JVM allows it
+     *
+     * @param field the field
+     * @return true if the field can now be read, false if the JVM prevents it
+     * @throws SecurityException if a security manager prevents it
+     */
+    static boolean trySetAccessible(Field field) {
+        try {
+            field.setAccessible(true);
+            return true;
+        } catch (SecurityException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // InaccessibleObjectException, when running this on Java 9 and later without the multi-release variant
+            return false;
+        }
+    }
+}
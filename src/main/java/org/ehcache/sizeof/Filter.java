@@ -40,4 +40,15 @@ public interface Filter {
      */
     void ignoreField(final Field field);
 
+    /**
+     * Marks a class as deeply immutable: neither its instances, nor anything they reference, change once constructed.
+     * The deep size of each instance is then only measured once, and reused whenever it is reached again. This doesn't
+     * apply to sub-classes.
+     *
+     * @param clazz the deeply immutable class
+     */
+    default void deeplyImmutable(final Class clazz) {
+        throw new UnsupportedOperationException();
+    }
+
 }
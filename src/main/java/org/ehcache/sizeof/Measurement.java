@@ -0,0 +1,99 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+/**
+ * Collects what a single sizing call walked, for the statistics, the events and the metrics it gets reported to
+ */
+final class Measurement {
+
+    private final SizeOfStatistics statistics;
+    private final Object event;
+    private final String engine;
+    private final long start;
+    private long objects;
+    private boolean truncated;
+
+    private Measurement(final SizeOfStatistics statistics, final Object event, final String engine) {
+        this.statistics = statistics;
+        this.event = event;
+        this.engine = engine;
+        this.start = statistics != null || Metrics.ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Starts measuring a sizing call, if anything is to be reported about it
+     *
+     * @param sizeOf     the instance measuring
+     * @param statistics where to count the call, if anywhere
+     * @return the measurement, or null if there is nothing to report the call to
+     */
+    static Measurement start(final SizeOf sizeOf, final SizeOfStatistics statistics) {
+        final Object event = SizingEvents.begin();
+        if (statistics == null && event == null && !Metrics.ENABLED) {
+            return null;
+        }
+        String engine = null;
+        if (Metrics.ENABLED) {
+            engine = sizeOf.getEngineName();
+            Metrics.METRICS.walkStarted(engine);
+        }
+        return new Measurement(statistics, event, engine);
+    }
+
+    /**
+     * Records a walk of the call
+     *
+     * @param objects the amount of objects the walk visited
+     */
+    void walked(final long objects) {
+        this.objects += objects;
+    }
+
+    /**
+     * Records that a walk of the call got cut short, and the graphs walked again
+     */
+    void truncated() {
+        truncated = true;
+    }
+
+    /**
+     * Reports the call
+     *
+     * @param sizeOf the instance that measured
+     * @param roots  the roots of the graphs measured
+     * @param bytes  the size measured
+     * @return bytes
+     */
+    long end(final SizeOf sizeOf, final Object[] roots, final long bytes) {
+        final long nanos = statistics != null || Metrics.ENABLED ? System.nanoTime() - start : 0;
+        if (statistics != null) {
+            statistics.measured(bytes, nanos);
+            statistics.walked(objects);
+            if (truncated) {
+                statistics.truncated();
+            }
+        }
+        if (event != null) {
+            SizingEvents.commit(event, roots, objects, bytes, truncated, sizeOf.getEngineName());
+        }
+        if (Metrics.ENABLED) {
+            Metrics.METRICS.walkEnded(engine, objects, bytes, nanos, truncated);
+        }
+        return bytes;
+    }
+}
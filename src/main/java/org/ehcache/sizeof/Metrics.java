@@ -0,0 +1,103 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * The {@link SizeOfMetrics} found on the classpath, combined into one. Without any, {@link #METRICS} is a constant whose
+ * methods do nothing, which the JIT inlines away, and {@link #ENABLED} lets callers skip computing what they would report.
+ */
+final class Metrics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Metrics.class);
+
+    static final SizeOfMetrics METRICS;
+    static final boolean ENABLED;
+
+    static {
+        final List<SizeOfMetrics> metrics = load(SizeOfMetrics.class.getClassLoader());
+        ENABLED = !metrics.isEmpty();
+        if (metrics.isEmpty()) {
+            METRICS = new SizeOfMetrics() { };
+        } else if (metrics.size() == 1) {
+            METRICS = metrics.get(0);
+        } else {
+            METRICS = new CompositeMetrics(metrics.toArray(new SizeOfMetrics[metrics.size()]));
+        }
+    }
+
+    private Metrics() {
+        // not instantiable
+    }
+
+    static List<SizeOfMetrics> load(ClassLoader classLoader) {
+        final List<SizeOfMetrics> metrics = new ArrayList<>();
+        final Iterator<SizeOfMetrics> iterator = ServiceLoader.load(SizeOfMetrics.class, classLoader).iterator();
+        while (true) {
+            try {
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                metrics.add(iterator.next());
+            } catch (ServiceConfigurationError e) {
+                LOG.warn("Couldn't load a SizeOfMetrics, it won't get notified", e);
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Notifies several listeners in turn
+     */
+    private static final class CompositeMetrics implements SizeOfMetrics {
+
+        private final SizeOfMetrics[] metrics;
+
+        CompositeMetrics(final SizeOfMetrics[] metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void walkStarted(final String engine) {
+            for (SizeOfMetrics metric : metrics) {
+                metric.walkStarted(engine);
+            }
+        }
+
+        @Override
+        public void walkEnded(final String engine, final long objects, final long bytes, final long nanos, final boolean truncated) {
+            for (SizeOfMetrics metric : metrics) {
+                metric.walkEnded(engine, objects, bytes, nanos, truncated);
+            }
+        }
+
+        @Override
+        public void cacheMissed(final Cache cache, final Class<?> type) {
+            for (SizeOfMetrics metric : metrics) {
+                metric.cacheMissed(cache, type);
+            }
+        }
+    }
+}
@@ -22,13 +22,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.ref.SoftReference;
-import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Deque;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Set;
 
@@ -44,19 +42,43 @@ final class ObjectGraphWalker {
     private static final Logger LOG = LoggerFactory.getLogger(ObjectGraphWalker.class);
     private static final String VERBOSE_DEBUG_LOGGING = "org.ehcache.sizeof.verboseDebugLogging";
     private static final boolean USE_VERBOSE_DEBUG_LOGGING;
+    private static final String FIXED_SHAPE_MEMOIZATION = "org.ehcache.sizeof.fixedShapeMemoization";
+    private static final boolean USE_FIXED_SHAPE_MEMOIZATION;
+    private static final int MAX_FIXED_SHAPE_DEPTH = 8;
+    private static final String COLLECTION_SIZE_CACHING = "org.ehcache.sizeof.collectionSizeCaching";
+    private static final boolean USE_COLLECTION_SIZE_CACHING;
+    private static final String BREADTH_FIRST_WALK = "org.ehcache.sizeof.breadthFirstWalk";
+    private static final boolean USE_BREADTH_FIRST_WALK;
+    private static final String SIZER_GENERATION_THRESHOLD = "org.ehcache.sizeof.sizerGenerationThreshold";
+    private static final int SIZER_GENERATION_MIN_WALKS = Integer.getInteger(SIZER_GENERATION_THRESHOLD, 0);
+    private static final String TREE_MODE_OBJECT_LIMIT = "org.ehcache.sizeof.treeModeObjectLimit";
+    private static final long TREE_MODE_MAX_OBJECTS = Long.getLong(TREE_MODE_OBJECT_LIMIT, 1000000L);
+    private static final String APPROXIMATE_TRACKING_BYTES = "org.ehcache.sizeof.approximateTrackingBytes";
+    private static final long APPROXIMATE_TRACKING_MAX_BYTES = Long.getLong(APPROXIMATE_TRACKING_BYTES, 16L * 1024 * 1024);
 
-    private final WeakIdentityConcurrentMap<Class<?>, SoftReference<Collection<Field>>> fieldCache =
+    private final WeakIdentityConcurrentMap<Class<?>, SoftReference<WalkPlan>> planCache =
         new WeakIdentityConcurrentMap<>();
     private final WeakIdentityConcurrentMap<Class<?>, Boolean> classCache =
         new WeakIdentityConcurrentMap<>();
+    private final WeakIdentityConcurrentMap<Object, Long> immutableSizes =
+        new WeakIdentityConcurrentMap<>();
 
     private final boolean bypassFlyweight;
+    private final boolean memoizeFixedShapes;
     private final SizeOfFilter sizeOfFilter;
+    private final CollectionSizeCache collectionSizes;
 
     private final Visitor visitor;
+    private final QuietWalk quietWalk;
+
+    // written before the statistics are published through a volatile field of the owning SizeOf, which callers read first
+    private SizeOfStatistics statistics;
 
     static {
         USE_VERBOSE_DEBUG_LOGGING = getVerboseSizeOfDebugLogging();
+        USE_FIXED_SHAPE_MEMOIZATION = Boolean.getBoolean(FIXED_SHAPE_MEMOIZATION);
+        USE_COLLECTION_SIZE_CACHING = Boolean.getBoolean(COLLECTION_SIZE_CACHING);
+        USE_BREADTH_FIRST_WALK = Boolean.getBoolean(BREADTH_FIRST_WALK);
     }
 
     /**
@@ -69,6 +91,23 @@ final class ObjectGraphWalker {
      * @see SizeOfFilter
      */
     ObjectGraphWalker(Visitor visitor, SizeOfFilter filter, final boolean bypassFlyweight) {
+        this(visitor, filter, bypassFlyweight, USE_FIXED_SHAPE_MEMOIZATION, USE_COLLECTION_SIZE_CACHING);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param visitor the visitor to use, which needs to return the same size for all instances of a non-array type
+     *                if memoizeFixedShapes is true
+     * @param filter  the filtering
+     * @param bypassFlyweight  the filtering
+     * @param memoizeFixedShapes whether to memoize the deep size of types whose deep size is constant
+     * @param cacheCollectionSizes whether to cache the deep size of JDK collections walked as single root
+     * @see Visitor
+     * @see SizeOfFilter
+     */
+    ObjectGraphWalker(Visitor visitor, SizeOfFilter filter, final boolean bypassFlyweight, final boolean memoizeFixedShapes,
+                      final boolean cacheCollectionSizes) {
         if(visitor == null) {
             throw new NullPointerException("Visitor can't be null");
         }
@@ -78,6 +117,9 @@ final class ObjectGraphWalker {
         this.visitor = visitor;
         this.sizeOfFilter = filter;
         this.bypassFlyweight = bypassFlyweight;
+        this.memoizeFixedShapes = memoizeFixedShapes;
+        this.collectionSizes = cacheCollectionSizes ? new CollectionSizeCache() : null;
+        this.quietWalk = bypassFlyweight ? this::walkQuietlyBypassingFlyweights : this::walkQuietly;
     }
 
     private static boolean getVerboseSizeOfDebugLogging() {
@@ -101,6 +143,40 @@ final class ObjectGraphWalker {
         long visit(Object object);
     }
 
+    /**
+     * The loop walking the graph when there is neither listener nor traversal recording, picked once per walker as per its
+     * configuration
+     */
+    private interface QuietWalk {
+        /**
+         * Walks the graph from the objects to visit
+         *
+         * @param toVisit   the objects to visit
+         * @param visited   the tracker of the objects visited
+         * @param memoizing whether the walk is measuring a deeply immutable object, to memoize its size
+         * @return the sum of all Visitor#visit returned values
+         */
+        long walk(ChunkedWorkStack toVisit, VisitedTracker visited, boolean memoizing);
+    }
+
+    /**
+     * Keeps track of the objects already visited during a walk
+     */
+    interface VisitedTracker {
+        /**
+         * Records an object as visited
+         *
+         * @param object the object about to be visited
+         * @return true if the object wasn't visited before, and is to be visited
+         */
+        boolean add(Object object);
+
+        /**
+         * @return the amount of objects recorded as visited so far
+         */
+        long visitedCount();
+    }
+
     /**
      * Walk the graph and call into the "visitor"
      *
@@ -119,15 +195,126 @@ final class ObjectGraphWalker {
      * @return the sum of all Visitor#visit returned values
      */
     long walk(VisitorListener visitorListener, Object... root) {
+        return walk(visitorListener, (Measurement)null, root);
+    }
+
+    /**
+     * Walk the graph and call into the "visitor"
+     *
+     * @param visitorListener          A decorator for the Visitor
+     * @param measurement               where to record the walk, if anywhere
+     * @param root                      the roots of the objects (a shared graph will only be visited once)
+     * @return the sum of all Visitor#visit returned values
+     */
+    long walk(VisitorListener visitorListener, Measurement measurement, Object... root) {
+        // listeners expect to be notified of every object, which a cached size can't do
+        final CollectionSizeCache.Snapshot snapshot = collectionSizes != null && visitorListener == null && root != null
+            && root.length == 1 && CollectionSizeCache.isSupported(root[0]) ? collectionSizes.snapshot(root[0]) : null;
+        if (snapshot != null) {
+            final CollectionSizeCache.Snapshot cached = collectionSizes.get(root[0], snapshot);
+            if (cached != null) {
+                if (measurement != null) {
+                    measurement.walked(cached.getObjects());
+                }
+                return cached.getDeepSize();
+            }
+            final VisitedTracker visited = identityTracker();
+            final long size = walkRoots(null, visited, measurement, root);
+            collectionSizes.put(root[0], snapshot, size, visited.visitedCount());
+            return size;
+        }
+        return walkRoots(visitorListener, identityTracker(), measurement, root);
+    }
+
+    /**
+     * Walk the graph and call into the "visitor", assuming that the graph is a tree: no object is reachable through more than one
+     * path. This avoids tracking visited objects altogether. Should the number of objects visited exceed the configured limit,
+     * e.g. because the graph contains a cycle, the graph is walked again tracking visited objects.
+     *
+     * @param root                      the roots of the objects (shared objects will be visited as many times as they are reached)
+     * @return the sum of all Visitor#visit returned values
+     */
+    long walkTree(Object... root) {
+        return walkTree((Measurement)null, root);
+    }
+
+    /**
+     * Walk the graph and call into the "visitor", assuming that the graph is a tree, see {@link #walkTree(Object...)}
+     *
+     * @param measurement               where to record the walk, if anywhere
+     * @param root                      the roots of the objects (shared objects will be visited as many times as they are reached)
+     * @return the sum of all Visitor#visit returned values
+     */
+    long walkTree(Measurement measurement, Object... root) {
+        try {
+            return walkRoots(null, new TreeTracker(TREE_MODE_MAX_OBJECTS), measurement, root);
+        } catch (TreeLimitExceededException e) {
+            if (measurement != null) {
+                measurement.walked(TREE_MODE_MAX_OBJECTS);
+                measurement.truncated();
+            }
+            LOG.debug("Walked more than {} objects in tree mode, walking again tracking visited objects", TREE_MODE_MAX_OBJECTS);
+            return walk(null, measurement, root);
+        }
+    }
+
+    /**
+     * Walk the graph and call into the "visitor", tracking visited objects in Bloom filters on the heap rather than an identity
+     * set. Filters are allocated as the walk goes, growing up to the configured size, so memory used for tracking stays within
+     * a third more than that amount, but objects can wrongly be considered as visited already, in which case they and the part
+     * of the graph only reachable through them are skipped. Once the largest filter got allocated, that happens for about
+     * {@code (1 - e^(-4n/m))^4} of the objects, {@code n} being the objects visited since and {@code m} its bits, see
+     * {@link SizeOf#approximateDeepSizeOf(Object...)}.
+     *
+     * @param root                      the roots of the objects (a shared graph will only be visited once)
+     * @return the sum of all Visitor#visit returned values, never more than {@link #walk(Object...)} would return
+     */
+    long walkApproximate(Object... root) {
+        return walkApproximate((Measurement)null, root);
+    }
+
+    /**
+     * Walk the graph and call into the "visitor", tracking visited objects in a Bloom filter, see {@link #walkApproximate(Object...)}
+     *
+     * @param measurement               where to record the walk, if anywhere
+     * @param root                      the roots of the objects (a shared graph will only be visited once)
+     * @return the sum of all Visitor#visit returned values, never more than {@link #walk(Object...)} would return
+     */
+    long walkApproximate(Measurement measurement, Object... root) {
+        return walkRoots(null, new BloomFilterVisitedTracker(APPROXIMATE_TRACKING_MAX_BYTES), measurement, root);
+    }
+
+    /**
+     * Decides, ahead of any walk reaching one of its instances, whether a type is to be walked and, if so, which of its
+     * fields to walk
+     *
+     * @param type the type
+     * @return the fields of instances of the type to walk, none for arrays, or null if they are not to be walked
+     */
+    Field[] warmUp(Class<?> type) {
+        if (!shouldWalkClass(type)) {
+            return null;
+        }
+        return type.isArray() ? new Field[0] : getWalkPlan(type).getFields();
+    }
+
+    /**
+     * Starts counting what walks go through
+     *
+     * @param statistics where to count
+     */
+    void recordTo(SizeOfStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    private long walkRoots(VisitorListener visitorListener, VisitedTracker visited, Measurement measurement, Object... root) {
         final StringBuilder traversalDebugMessage;
         if (USE_VERBOSE_DEBUG_LOGGING && LOG.isDebugEnabled()) {
             traversalDebugMessage = new StringBuilder();
         } else {
             traversalDebugMessage = null;
         }
-        long result = 0;
-        Deque<Object> toVisit = new ArrayDeque<>();
-        Set<Object> visited = newSetFromMap(new IdentityHashMap<>());
+        ChunkedWorkStack toVisit = new ChunkedWorkStack(USE_BREADTH_FIRST_WALK);
 
         if (root != null) {
             if (traversalDebugMessage != null) {
@@ -145,28 +332,49 @@ final class ObjectGraphWalker {
             }
         }
 
+        long result;
+        try {
+            if (visitorListener == null && traversalDebugMessage == null) {
+                result = quietWalk.walk(toVisit, visited, false);
+            } else {
+                result = walk(toVisit, visited, visitorListener, traversalDebugMessage);
+            }
+        } finally {
+            // also when a tree mode walk exceeds its object limit, leaving objects to visit behind
+            toVisit.release();
+        }
+        if (measurement != null) {
+            measurement.walked(visited.visitedCount());
+        }
+
+        if (traversalDebugMessage != null) {
+            traversalDebugMessage.append("Total size: ").append(result).append(" bytes\n");
+            LOG.debug(traversalDebugMessage.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Walks the graph from the objects to visit, notifying the listener and recording the traversal as it goes
+     *
+     * @param toVisit               the objects to visit
+     * @param visited               the tracker of the objects visited
+     * @param visitorListener       A decorator for the Visitor
+     * @param traversalDebugMessage where to log the traversal to, if not null
+     * @return the sum of all Visitor#visit returned values
+     */
+    private long walk(ChunkedWorkStack toVisit, VisitedTracker visited, VisitorListener visitorListener,
+                      StringBuilder traversalDebugMessage) {
+        long result = 0;
+
         while (!toVisit.isEmpty()) {
 
             Object ref = toVisit.pop();
 
             if (visited.add(ref)) {
-                Class<?> refClass = ref.getClass();
-                if (!byPassIfFlyweight(ref) && shouldWalkClass(refClass)) {
-                    if (refClass.isArray() && !refClass.getComponentType().isPrimitive()) {
-                        for (int i = 0; i < Array.getLength(ref); i++) {
-                            nullSafeAdd(toVisit, Array.get(ref, i));
-                        }
-                    } else {
-                        for (Field field : getFilteredFields(refClass)) {
-                            try {
-                                nullSafeAdd(toVisit, field.get(ref));
-                            } catch (IllegalAccessException ex) {
-                                throw new RuntimeException(ex);
-                            }
-                        }
-                    }
+                if (!byPassIfFlyweight(ref) && shouldWalkClass(ref.getClass())) {
+                    final long visitSize = visit(toVisit, ref, false);
 
-                    final long visitSize = visitor.visit(ref);
                     if (visitorListener != null) {
                         visitorListener.visited(ref, visitSize);
                     }
@@ -181,28 +389,139 @@ final class ObjectGraphWalker {
                 }
             }
         }
+        return result;
+    }
 
-        if (traversalDebugMessage != null) {
-            traversalDebugMessage.append("Total size: ").append(result).append(" bytes\n");
-            LOG.debug(traversalDebugMessage.toString());
+    /**
+     * Walks the graph from the objects to visit, with neither listener nor traversal recording, which is by far the most
+     * common case: this loop is kept free of the branches these require, as well as of the flyweight lookup, for walkers
+     * not bypassing flyweights.
+     *
+     * @param toVisit               the objects to visit
+     * @param visited               the tracker of the objects visited
+     * @param memoizing             whether the walk is measuring a deeply immutable object, to memoize its size
+     * @return the sum of all Visitor#visit returned values
+     */
+    private long walkQuietly(ChunkedWorkStack toVisit, VisitedTracker visited, boolean memoizing) {
+        long result = 0;
+        while (!toVisit.isEmpty()) {
+            Object ref = toVisit.pop();
+            if (visited.add(ref) && shouldWalkClass(ref.getClass())) {
+                result += visit(toVisit, ref, memoizing);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Walks the graph from the objects to visit like {@link #walkQuietly(ChunkedWorkStack, VisitedTracker, boolean)} does,
+     * but skipping shared flyweight objects
+     *
+     * @param toVisit               the objects to visit
+     * @param visited               the tracker of the objects visited
+     * @param memoizing             whether the walk is measuring a deeply immutable object, to memoize its size
+     * @return the sum of all Visitor#visit returned values
+     */
+    private long walkQuietlyBypassingFlyweights(ChunkedWorkStack toVisit, VisitedTracker visited, boolean memoizing) {
+        long result = 0;
+        while (!toVisit.isEmpty()) {
+            Object ref = toVisit.pop();
+            if (visited.add(ref) && !isSharedFlyweight(ref) && shouldWalkClass(ref.getClass())) {
+                result += visit(toVisit, ref, memoizing);
+            }
         }
         return result;
     }
 
     /**
-     * Returns the filtered fields for a particular type
+     * Measures an object on its own, pushing the objects it references that need visiting, if any
+     *
+     * @param toVisit       the objects to visit
+     * @param ref           the object to measure
+     * @param memoizing     whether the walk is measuring a deeply immutable object, to memoize its size
+     * @return the size accounted for ref
+     */
+    private long visit(ChunkedWorkStack toVisit, Object ref, boolean memoizing) {
+        final Class<?> refClass = ref.getClass();
+        if (refClass.isArray()) {
+            if (!refClass.getComponentType().isPrimitive()) {
+                for (Object element : (Object[])ref) {
+                    nullSafeAdd(toVisit, element);
+                }
+            }
+            return visitor.visit(ref);
+        }
+        final WalkPlan plan = getWalkPlan(refClass);
+        // deeply immutable objects reached while measuring one are walked along with it, as they may reference it back
+        if (plan.isDeeplyImmutable() && !memoizing) {
+            return deeplyImmutableSize(ref);
+        }
+        if (memoizeFixedShapes) {
+            final long fixedShapeSize = fixedShapeSize(ref, plan);
+            if (fixedShapeSize >= 0) {
+                return fixedShapeSize;
+            }
+        }
+        Sizer<Object> sizer = plan.getSizer();
+        // a constant, so the JIT drops this entirely unless sizer generation is enabled
+        if (SIZER_GENERATION_MIN_WALKS > 0 && sizer == null && plan.getFields().length > 0
+            && plan.shouldPromote(SIZER_GENERATION_MIN_WALKS)) {
+            sizer = SizerGenerator.generate(refClass, plan.getFields());
+            plan.promote(sizer);
+        }
+        if (sizer != null) {
+            sizer.references(ref, toVisit);
+        } else {
+            for (int i = 0; i < plan.getFields().length; i++) {
+                nullSafeAdd(toVisit, plan.readField(i, ref));
+            }
+        }
+        return visitor.visit(ref);
+    }
+
+    /**
+     * Returns the memoized deep size of a deeply immutable object, walking its graph on its own first if needed. The deeply
+     * immutable objects it reaches are walked within that same walk, so that cycles amongst them end, but their own sizes
+     * don't get memoized along the way.
+     *
+     * @param obj the deeply immutable object
+     * @return the deep size of obj
+     */
+    private long deeplyImmutableSize(Object obj) {
+        Long size = immutableSizes.get(obj);
+        if (size == null) {
+            ChunkedWorkStack toVisit = new ChunkedWorkStack(USE_BREADTH_FIRST_WALK);
+            toVisit.push(obj);
+            try {
+                size = quietWalk.walk(toVisit, identityTracker(), true);
+            } finally {
+                toVisit.release();
+            }
+            immutableSizes.put(obj, size);
+        }
+        return size;
+    }
+
+    /**
+     * Returns the walk plan for a particular type
      *
      * @param refClass the type
-     * @return A collection of fields to be visited
+     * @return The plan holding the fields to be visited
      */
-    private Collection<Field> getFilteredFields(Class<?> refClass) {
-        SoftReference<Collection<Field>> ref = fieldCache.get(refClass);
-        Collection<Field> fieldList = ref != null ? ref.get() : null;
-        if (fieldList != null) {
-            return fieldList;
+    private WalkPlan getWalkPlan(Class<?> refClass) {
+        SoftReference<WalkPlan> ref = planCache.get(refClass);
+        WalkPlan plan = ref != null ? ref.get() : null;
+        final SizeOfStatistics statistics = this.statistics;
+        if (statistics != null) {
+            statistics.walkPlan(plan != null);
+        }
+        if (plan != null) {
+            return plan;
         } else {
+            Metrics.METRICS.cacheMissed(SizeOfMetrics.Cache.WALK_PLAN, refClass);
             Collection<Field> result;
-            result = sizeOfFilter.filterFields(refClass, getAllFields(refClass));
+            final Collection<Field> unsafeReadable = new HashSet<>();
+            result = sizeOfFilter.filterFields(refClass, getAllFields(refClass, unsafeReadable));
             if (USE_VERBOSE_DEBUG_LOGGING && LOG.isDebugEnabled()) {
                 for (Field field : result) {
                     if (Modifier.isTransient(field.getModifiers())) {
@@ -210,48 +529,169 @@ final class ObjectGraphWalker {
                     }
                 }
             }
-            fieldCache.put(refClass, new SoftReference<>(result));
-            return result;
+            final Field[] fields = result.toArray(new Field[result.size()]);
+            plan = new WalkPlan(fields, getUnsafeOffsets(fields, unsafeReadable), sizeOfFilter.isDeeplyImmutable(refClass),
+                getSizer(refClass, result));
+            planCache.put(refClass, new SoftReference<>(plan));
+            return plan;
+        }
+    }
+
+    /**
+     * Returns the offsets to read the fields reflection can't read at
+     *
+     * @param fields         the fields to walk
+     * @param unsafeReadable the fields that can only be read using Unsafe
+     * @return the offsets, negative for fields to be read reflectively, or null if all can
+     */
+    private static long[] getUnsafeOffsets(Field[] fields, Collection<Field> unsafeReadable) {
+        if (unsafeReadable.isEmpty()) {
+            return null;
+        }
+        final long[] offsets = new long[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            offsets[i] = unsafeReadable.contains(fields[i]) ? UnsafeAccess.objectFieldOffset(fields[i]) : -1L;
+        }
+        return offsets;
+    }
+
+    /**
+     * Returns the sizer found for a type, if it reads exactly the fields to walk
+     *
+     * @param refClass the type
+     * @param fields   the fields to walk
+     * @return the sizer, or null if there is none or it can't be used
+     */
+    private static Sizer<Object> getSizer(Class<?> refClass, Collection<Field> fields) {
+        final Sizer<Object> sizer = Sizers.get(refClass);
+        if (sizer != null && !new HashSet<>(sizer.fields()).equals(new HashSet<>(fields))) {
+            LOG.debug("Sizer for {} doesn't read the fields to walk {}, walking it using reflection", refClass.getName(), fields);
+            return null;
         }
+        return sizer;
+    }
+
+    /**
+     * Returns the memoized deep size of an instance of a fixed shape type, i.e. a type whose reference fields are all
+     * of final, fixed shape, types themselves. Instances with a null reference anywhere in their graph don't qualify.
+     *
+     * @param obj  the instance
+     * @param plan the walk plan for its type
+     * @return the deep size of obj, or a negative value if it needs to be walked
+     */
+    private long fixedShapeSize(Object obj, WalkPlan plan) {
+        if (!isFixedShape(plan, 0) || plan.getFields().length == 0 || !isFullyPopulated(obj, plan)) {
+            return -1;
+        }
+        long size = plan.getFixedShapeSize();
+        if (size < 0) {
+            size = measureFixedShape(obj, plan);
+            plan.setFixedShapeSize(size);
+        }
+        return size;
+    }
+
+    private boolean isFixedShape(WalkPlan plan, int depth) {
+        if (!plan.isFixedShapeResolved()) {
+            plan.resolveFixedShape(resolveFixedShapePlans(plan, depth));
+        }
+        return plan.getFixedShapePlans() != null;
+    }
+
+    private WalkPlan[] resolveFixedShapePlans(WalkPlan plan, int depth) {
+        if (depth >= MAX_FIXED_SHAPE_DEPTH) {
+            return null;
+        }
+        final Field[] fields = plan.getFields();
+        final WalkPlan[] plans = new WalkPlan[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            final Class<?> type = fields[i].getType();
+            if (type.isArray() || !Modifier.isFinal(type.getModifiers()) || !shouldWalkClass(type)
+                || (bypassFlyweight && FlyweightType.getFlyweightType(type) != FlyweightType.MISC)) {
+                return null;
+            }
+            plans[i] = getWalkPlan(type);
+            if (!isFixedShape(plans[i], depth + 1)) {
+                return null;
+            }
+        }
+        return plans;
+    }
+
+    private static boolean isFullyPopulated(Object obj, WalkPlan plan) {
+        final Field[] fields = plan.getFields();
+        final WalkPlan[] plans = plan.getFixedShapePlans();
+        for (int i = 0; i < fields.length; i++) {
+            final Object value = plan.readField(i, obj);
+            if (value == null || !isFullyPopulated(value, plans[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long measureFixedShape(Object obj, WalkPlan plan) {
+        long size = visitor.visit(obj);
+        final Field[] fields = plan.getFields();
+        final WalkPlan[] plans = plan.getFixedShapePlans();
+        for (int i = 0; i < fields.length; i++) {
+            size += measureFixedShape(plan.readField(i, obj), plans[i]);
+        }
+        return size;
     }
 
     private boolean shouldWalkClass(Class<?> refClass) {
         Boolean cached = classCache.get(refClass);
+        final SizeOfStatistics statistics = this.statistics;
+        if (statistics != null) {
+            statistics.filterVerdict(cached != null);
+        }
         if (cached == null) {
+            Metrics.METRICS.cacheMissed(SizeOfMetrics.Cache.FILTER_VERDICT, refClass);
             cached = sizeOfFilter.filterClass(refClass);
             classCache.put(refClass, cached);
         }
         return cached;
     }
 
-    private static void nullSafeAdd(final Deque<Object> toVisit, final Object o) {
+    private static VisitedTracker identityTracker() {
+        return new IdentityTracker();
+    }
+
+    private static void nullSafeAdd(final ChunkedWorkStack toVisit, final Object o) {
         if (o != null) {
             toVisit.push(o);
         }
     }
 
     /**
-     * Returns all non-primitive fields for the entire class hierarchy of a type
+     * Returns all non-primitive fields for the entire class hierarchy of a type. Fields the JVM prevents reflective access
+     * to are only returned if they can be read using Unsafe instead, in which case they're also added to unsafeReadable.
      *
-     * @param refClass the type
+     * @param refClass       the type
+     * @param unsafeReadable where to add the fields only readable using Unsafe to
      * @return all fields for that type
      */
-    private static Collection<Field> getAllFields(Class<?> refClass) {
+    private static Collection<Field> getAllFields(Class<?> refClass, Collection<Field> unsafeReadable) {
         Collection<Field> fields = new ArrayList<>();
         for (Class<?> klazz = refClass; klazz != null; klazz = klazz.getSuperclass()) {
             for (Field field : klazz.getDeclaredFields()) {
                 if (!Modifier.isStatic(field.getModifiers()) &&
                     !field.getType().isPrimitive()) {
                     try {
-                        field.setAccessible(true);
+                        if (!FieldAccess.trySetAccessible(field)) {
+                            if (UnsafeAccess.objectFieldOffset(field) < 0) {
+                                LOG.warn("The JVM is preventing Ehcache from accessing the subgraph beneath '{}'" +
+                                        " - cache sizes may be underestimated as a result", field);
+                                continue;
+                            }
+                            LOG.debug("Reading '{}' using Unsafe, as the JVM prevents reflective access to it", field);
+                            unsafeReadable.add(field);
+                        }
                     } catch (SecurityException e) {
                         LOG.error("Security settings prevent Ehcache from accessing the subgraph beneath '{}'" +
                                   " - cache sizes may be underestimated as a result", field, e);
                         continue;
-                    } catch (RuntimeException e) {
-                        LOG.warn("The JVM is preventing Ehcache from accessing the subgraph beneath '{}'" +
-                                " - cache sizes may be underestimated as a result", field, e);
-                        continue;
                     }
                     fields.add(field);
                 }
@@ -261,11 +701,67 @@ final class ObjectGraphWalker {
     }
 
     private boolean byPassIfFlyweight(Object obj) {
-        if(bypassFlyweight) {
-            FlyweightType type = FlyweightType.getFlyweightType(obj.getClass());
-            return type != null && type.isShared(obj);
+        return bypassFlyweight && isSharedFlyweight(obj);
+    }
+
+    private static boolean isSharedFlyweight(Object obj) {
+        FlyweightType type = FlyweightType.getFlyweightType(obj.getClass());
+        return type != null && type.isShared(obj);
+    }
+
+    /**
+     * Tracks visited objects in an identity set
+     */
+    private static final class IdentityTracker implements VisitedTracker {
+
+        private final Set<Object> visited = newSetFromMap(new IdentityHashMap<>());
+
+        @Override
+        public boolean add(final Object object) {
+            return visited.add(object);
+        }
+
+        @Override
+        public long visitedCount() {
+            return visited.size();
         }
-        return false;
     }
 
+    /**
+     * Doesn't track visited objects at all, but limits the amount of objects that can be visited
+     */
+    private static final class TreeTracker implements VisitedTracker {
+
+        private final long maxObjects;
+        private long objects;
+
+        TreeTracker(final long maxObjects) {
+            this.maxObjects = maxObjects;
+        }
+
+        @Override
+        public boolean add(final Object object) {
+            if (++objects > maxObjects) {
+                throw new TreeLimitExceededException();
+            }
+            return true;
+        }
+
+        @Override
+        public long visitedCount() {
+            return objects;
+        }
+    }
+
+    /**
+     * Thrown when a walk in tree mode visits more objects than allowed
+     */
+    private static final class TreeLimitExceededException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        TreeLimitExceededException() {
+            super(null, null, false, false);
+        }
+    }
 }
@@ -19,10 +19,24 @@ package org.ehcache.sizeof;
 import org.ehcache.sizeof.filters.CombinationSizeOfFilter;
 import org.ehcache.sizeof.filters.SizeOfFilter;
 import org.ehcache.sizeof.impl.AgentSizeOf;
+import org.ehcache.sizeof.impl.AsyncAgentSizeOf;
 import org.ehcache.sizeof.impl.ReflectionSizeOf;
 import org.ehcache.sizeof.impl.UnsafeSizeOf;
 import org.ehcache.sizeof.util.WeakIdentityConcurrentMap;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Collections.newSetFromMap;
+
 /**
  * Abstract sizeOf for Java. It will rely on a proper sizeOf to measure sizes of entire object graphs
  *
@@ -30,7 +44,14 @@ import org.ehcache.sizeof.util.WeakIdentityConcurrentMap;
  */
 public abstract class SizeOf {
 
+    private static final String PREWARM_DEPTH = "org.ehcache.sizeof.prewarmDepth";
+    private static final String MBEAN_DOMAIN = "org.ehcache.sizeof";
+
     private final ObjectGraphWalker walker;
+    private final ObjectGraphWalker.Visitor visitor;
+
+    private volatile SizeOfStatistics statistics;
+    private ObjectName mbeanName;
 
     /**
      * Builds a new SizeOf that will filter fields according to the provided filter
@@ -41,12 +62,13 @@ public abstract class SizeOf {
      * @see org.ehcache.sizeof.filters.SizeOfFilter
      */
     public SizeOf(SizeOfFilter fieldFilter, boolean caching, boolean bypassFlyweight) {
-        ObjectGraphWalker.Visitor visitor;
+        final ObjectGraphWalker.Visitor visitor;
         if (caching) {
             visitor = new CachingSizeOfVisitor();
         } else {
             visitor = new SizeOfVisitor();
         }
+        this.visitor = visitor;
         this.walker = new ObjectGraphWalker(visitor, fieldFilter, bypassFlyweight);
     }
 
@@ -68,11 +90,200 @@ public abstract class SizeOf {
      * @see #sizeOf(Object)
      */
     public long deepSizeOf(VisitorListener listener, Object... obj) {
-        return walker.walk(listener, obj);
+        final Measurement measurement = Measurement.start(this, statistics);
+        if (measurement == null) {
+            return walker.walk(listener, obj);
+        }
+        return measurement.end(this, obj, walker.walk(listener, measurement, obj));
     }
 
     public long deepSizeOf(Object... obj) {
-        return walker.walk(null, obj);
+        return deepSizeOf((VisitorListener)null, obj);
+    }
+
+    /**
+     * Measures the size in memory (heap) of the objects passed in, walking their graph down, assuming these graphs are trees:
+     * no object is reachable through more than one path, e.g. freshly deserialized values. Visited objects aren't tracked,
+     * which makes the walk cheaper. Should more objects than the {@code org.ehcache.sizeof.treeModeObjectLimit} system
+     * property (defaults to 1,000,000) be visited, e.g. because of a cycle, the graphs are measured again using
+     * {@link #deepSizeOf(Object...)}.
+     * Objects shared within or across these graphs will be measured as many times as they are reached
+     *
+     * @param obj                       the root objects of the graphs to measure
+     * @return the total size in bytes for these objects
+     * @see #deepSizeOf(Object...)
+     */
+    public long deepSizeOfTree(Object... obj) {
+        final Measurement measurement = Measurement.start(this, statistics);
+        if (measurement == null) {
+            return walker.walkTree(obj);
+        }
+        return measurement.end(this, obj, walker.walkTree(measurement, obj));
+    }
+
+    /**
+     * Measures the size in memory (heap) of the objects passed in, walking their graph down, using a bounded amount of memory
+     * to track visited objects: Bloom filters, keyed on the identity hash codes of objects and their classes, allocated on the
+     * heap as the walk goes, from 64KB up to {@code org.ehcache.sizeof.approximateTrackingBytes} bytes (defaults to 16MB) for
+     * the largest, which is at most a third more memory in total.
+     * The result can only ever undercount: an object wrongly considered as already visited is skipped, along with anything
+     * only reachable through it. That happens for a fraction of objects of about {@code (1 - e^(-4n/m))^4}, for the {@code n}
+     * objects visited past the largest filter's allocation and its {@code m} bits, plus below 0.1% for the smaller filters
+     * (below 0.5% overall for 10 million objects with the default), plus the identity hash code collisions amongst instances
+     * of a same class (about {@code c / 2^31} for {@code c} instances of that class, identity hash codes being 31 bits
+     * on 64 bit HotSpot JVMs).
+     * Meant for graphs too big for {@link #deepSizeOf(Object...)} to track every visited object.
+     *
+     * @param obj                       the root objects of the graphs to measure
+     * @return the approximate total size in bytes for these objects
+     * @see #deepSizeOf(Object...)
+     */
+    public long approximateDeepSizeOf(Object... obj) {
+        final Measurement measurement = Measurement.start(this, statistics);
+        if (measurement == null) {
+            return walker.walkApproximate(obj);
+        }
+        return measurement.end(this, obj, walker.walkApproximate(measurement, obj));
+    }
+
+    /**
+     * Registers a {@link SizeOfMXBean} with the platform MBean server, as {@code org.ehcache.sizeof:type=SizeOf,name=<name>},
+     * exposing what this instance measures from now on. Nothing is counted until this is first called. The MBean server
+     * holds on to this instance until {@link #unregisterMBean()} is called.
+     *
+     * @param name the name to register this instance under
+     * @return the name of the registered MBean
+     * @throws JMException if the MBean couldn't be registered, e.g. because the name is taken already
+     * @throws IllegalStateException if this instance is registered already
+     */
+    public synchronized ObjectName registerMBean(String name) throws JMException {
+        if (mbeanName != null) {
+            throw new IllegalStateException("Already registered as " + mbeanName);
+        }
+        final ObjectName objectName = new ObjectName(MBEAN_DOMAIN + ":type=SizeOf,name=" + ObjectName.quote(name));
+        SizeOfStatistics statistics = this.statistics;
+        if (statistics == null) {
+            statistics = new SizeOfStatistics(this);
+            walker.recordTo(statistics);
+            if (visitor instanceof CachingSizeOfVisitor) {
+                ((CachingSizeOfVisitor)visitor).statistics = statistics;
+            }
+        }
+        ManagementFactory.getPlatformMBeanServer().registerMBean(statistics, objectName);
+        this.statistics = statistics;
+        mbeanName = objectName;
+        return objectName;
+    }
+
+    /**
+     * Unregisters the MBean registered by {@link #registerMBean(String)}, if any. Counting goes on, should it be registered
+     * again.
+     *
+     * @throws JMException if the MBean couldn't be unregistered
+     */
+    public synchronized void unregisterMBean() throws JMException {
+        if (mbeanName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            mbeanName = null;
+        }
+    }
+
+    /**
+     * Discards the shallow sizes cached per class, for instance because this instance measures them differently from now on.
+     * Sizes measured concurrently to this call are not cached either.
+     */
+    protected void invalidateCachedSizes() {
+        if (visitor instanceof CachingSizeOfVisitor) {
+            ((CachingSizeOfVisitor)visitor).invalidate();
+        }
+    }
+
+    /**
+     * Identifies how this instance currently measures shallow sizes, which sizes persisted across restarts are keyed on
+     *
+     * @return the name of the engine measuring
+     */
+    protected String getEngineName() {
+        return getClass().getName();
+    }
+
+    /**
+     * Measures the shallow size of the instances of a type without one at hand, for engines that can
+     *
+     * @param type a concrete, non array, type
+     * @return the size in bytes of instances of the type, or -1 if this engine needs an instance to measure it
+     */
+    protected long instanceSizeOf(Class<?> type) {
+        return -1;
+    }
+
+    /**
+     * Computes ahead of time what walking instances of a type requires: whether they are walked at all, which of their
+     * fields are, and their shallow size, if cached and measurable without an instance
+     *
+     * @param type the type
+     */
+    protected void warmUp(Class<?> type) {
+        warmUpType(type);
+    }
+
+    private Field[] warmUpType(Class<?> type) {
+        final Field[] fields = walker.warmUp(type);
+        if (fields != null && visitor instanceof CachingSizeOfVisitor) {
+            ((CachingSizeOfVisitor)visitor).warmUp(type);
+        }
+        return fields;
+    }
+
+    /**
+     * Computes ahead of time what walking instances of these types requires: whether they are walked at all, which of their
+     * fields are, and their shallow size, if cached and measurable without an instance. So are the types of their walked
+     * fields, the component types of arrays, and so on, up to the {@code org.ehcache.sizeof.prewarmDepth} system property
+     * (defaults to 8) levels down. Declared types that are interfaces or abstract are skipped, as instances of the actual
+     * types referenced can't be known ahead of time.
+     * Meant to be called while the application boots, to spare the first sizings of these types that cost.
+     *
+     * @param types the types to warm up
+     */
+    public void prewarm(Class<?>... types) {
+        final int maxDepth = Integer.getInteger(PREWARM_DEPTH, 8);
+        final Set<Class<?>> warmedUp = newSetFromMap(new IdentityHashMap<>());
+        List<Class<?>> level = Arrays.asList(types);
+        for (int depth = 0; depth <= maxDepth && !level.isEmpty(); depth++) {
+            final List<Class<?>> nextLevel = new ArrayList<>();
+            for (Class<?> type : level) {
+                if (type == null || type.isPrimitive() || !warmedUp.add(type)
+                    || !type.isArray() && (type.isInterface() || Modifier.isAbstract(type.getModifiers()))) {
+                    continue;
+                }
+                final Field[] fields = warmUpType(type);
+                if (fields == null) {
+                    continue;
+                }
+                if (type.isArray()) {
+                    nextLevel.add(type.getComponentType());
+                }
+                for (Field field : fields) {
+                    nextLevel.add(field.getType());
+                }
+            }
+            level = nextLevel;
+        }
+    }
+
+    /**
+     * Warms up the classes of packages, and of their subpackages, as {@link #prewarm(Class[])} does. Classes are found in
+     * the directories and jars of the class loader, loaded but not initialized.
+     *
+     * @param loader       the class loader to look the packages up with
+     * @param packageNames the packages
+     */
+    public void prewarmPackages(ClassLoader loader, String... packageNames) {
+        final List<Class<?>> types = new ArrayList<>();
+        for (String packageName : packageNames) {
+            types.addAll(ClassPathScanner.scan(loader, packageName));
+        }
+        prewarm(types.toArray(new Class<?>[types.size()]));
     }
 
     public static SizeOf newInstance(final SizeOfFilter... filters) {
@@ -81,8 +292,13 @@ public abstract class SizeOf {
 
     public static SizeOf newInstance(boolean bypassFlyweight, boolean cache, final SizeOfFilter... filters) {
         final SizeOfFilter filter = new CombinationSizeOfFilter(filters);
+        if (Boolean.getBoolean(AsyncAgentSizeOf.ASYNC_LOADING) && !Boolean.getBoolean(AgentSizeOf.BYPASS_LOADING)) {
+            return new AsyncAgentSizeOf(filter, cache, bypassFlyweight);
+        }
         try {
-            return new AgentSizeOf(filter, cache, bypassFlyweight);
+            final AgentSizeOf sizeOf = new AgentSizeOf(filter, cache, bypassFlyweight);
+            sizeOf.warmUpLoadedClasses();
+            return sizeOf;
         } catch (UnsupportedOperationException e) {
             try {
                 return new UnsafeSizeOf(filter, cache, bypassFlyweight);
@@ -113,23 +329,73 @@ public abstract class SizeOf {
      * Will Cache already visited types
      */
     private class CachingSizeOfVisitor implements ObjectGraphWalker.Visitor {
-        private final WeakIdentityConcurrentMap<Class<?>, Long> cache = new WeakIdentityConcurrentMap<>();
+        private volatile WeakIdentityConcurrentMap<Class<?>, Long> cache = new WeakIdentityConcurrentMap<>();
+        private final ClassLayoutStore store = ClassLayoutStore.shared();
+        // published along with the statistics of the enclosing SizeOf, see ObjectGraphWalker
+        private SizeOfStatistics statistics;
+
+        void invalidate() {
+            cache = new WeakIdentityConcurrentMap<>();
+        }
+
+        void warmUp(final Class<?> klazz) {
+            if (klazz.isArray() || klazz.isPrimitive() || Modifier.isAbstract(klazz.getModifiers())) {
+                return;
+            }
+            final WeakIdentityConcurrentMap<Class<?>, Long> cache = this.cache;
+            if (cache.get(klazz) == null) {
+                String engine = getEngineName();
+                Long size = store != null ? store.shallowSize(engine, klazz) : null;
+                if (size == null) {
+                    long measuredSize = instanceSizeOf(klazz);
+                    if (measuredSize < 0) {
+                        return;
+                    }
+                    size = measuredSize;
+                    if (store != null) {
+                        store.record(engine, klazz, measuredSize);
+                    }
+                }
+                cache.put(klazz, size);
+            }
+        }
 
         /**
          * {@inheritDoc}
          */
         public long visit(final Object object) {
             Class<?> klazz = object.getClass();
+            // sizes measured while being invalidated end up in the discarded cache
+            final WeakIdentityConcurrentMap<Class<?>, Long> cache = this.cache;
             Long cachedSize = cache.get(klazz);
             if (cachedSize == null) {
                 if (klazz.isArray()) {
                     return sizeOf(object);
+                }
+                final SizeOfStatistics statistics = this.statistics;
+                if (statistics != null) {
+                    statistics.shallowSize(false);
+                }
+                Metrics.METRICS.cacheMissed(SizeOfMetrics.Cache.SHALLOW_SIZE, klazz);
+                if (store != null) {
+                    String engine = getEngineName();
+                    Long storedSize = store.shallowSize(engine, klazz);
+                    long size = storedSize != null ? storedSize : sizeOf(object);
+                    if (storedSize == null) {
+                        store.record(engine, klazz, size);
+                    }
+                    cache.put(klazz, size);
+                    return size;
                 } else {
                     long size = sizeOf(object);
                     cache.put(klazz, size);
                     return size;
                 }
             } else {
+                final SizeOfStatistics statistics = this.statistics;
+                if (statistics != null) {
+                    statistics.shallowSize(true);
+                }
                 return cachedSize;
             }
         }
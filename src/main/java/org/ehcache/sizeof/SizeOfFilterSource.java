@@ -67,4 +67,8 @@ public final class SizeOfFilterSource implements Filter {
         typeFilter.addField(field);
     }
 
+    public void deeplyImmutable(final Class clazz) {
+        typeFilter.addDeeplyImmutableClass(clazz);
+    }
+
 }
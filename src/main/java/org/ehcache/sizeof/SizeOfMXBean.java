@@ -0,0 +1,104 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+/**
+ * Management interface exposing what a {@link SizeOf} instance measured since it got registered, see
+ * {@link SizeOf#registerMBean(String)}. Times are in nanoseconds, sizes in bytes.
+ */
+public interface SizeOfMXBean {
+
+    /**
+     * @return the name of the engine currently measuring shallow sizes
+     */
+    String getEngine();
+
+    /**
+     * @return the description of the JVM data model sizes are computed for
+     */
+    String getJvmInformation();
+
+    /**
+     * @return the amount of deep sizing calls
+     */
+    long getCalls();
+
+    /**
+     * @return the amount of objects reached by the walks of these calls, measured or not
+     */
+    long getObjectsVisited();
+
+    /**
+     * @return the sum of the sizes returned by these calls
+     */
+    long getBytesMeasured();
+
+    /**
+     * @return the time spent in these calls
+     */
+    long getNanosSpent();
+
+    /**
+     * @return the amount of times the fields to walk of a type were already known
+     */
+    long getWalkPlanHits();
+
+    /**
+     * @return the amount of times the fields to walk of a type had to be computed
+     */
+    long getWalkPlanMisses();
+
+    /**
+     * @return the share of walk plan lookups that were hits, 0 if none happened
+     */
+    double getWalkPlanHitRatio();
+
+    /**
+     * @return the amount of times whether to walk a type was already decided
+     */
+    long getFilterVerdictHits();
+
+    /**
+     * @return the amount of times the filters had to decide whether to walk a type
+     */
+    long getFilterVerdictMisses();
+
+    /**
+     * @return the share of filter verdict lookups that were hits, 0 if none happened
+     */
+    double getFilterVerdictHitRatio();
+
+    /**
+     * @return the amount of times the shallow size of a non array type was cached already
+     */
+    long getShallowSizeHits();
+
+    /**
+     * @return the amount of times the shallow size of a non array type had to be looked up or measured
+     */
+    long getShallowSizeMisses();
+
+    /**
+     * @return the share of shallow size lookups that were hits, 0 if none happened or sizes aren't cached
+     */
+    double getShallowSizeHitRatio();
+
+    /**
+     * @return the amount of tree mode walks cut short for exceeding their object limit, and walked again
+     */
+    long getTruncatedWalks();
+}
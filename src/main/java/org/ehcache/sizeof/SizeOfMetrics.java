@@ -0,0 +1,73 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+/**
+ * A listener to what sizing does, instantiated by the {@link java.util.ServiceLoader}: implementations are listed in
+ * {@code META-INF/services/org.ehcache.sizeof.SizeOfMetrics} and get notified by every {@link SizeOf} instance.
+ * Notifications happen on the threads sizing, so implementations need to be thread safe and to return quickly.
+ * Without any implementation on the classpath, notifying costs nothing once the JIT compiled the sizing code.
+ */
+public interface SizeOfMetrics {
+
+    /**
+     * The caches a walk looks types up in
+     */
+    enum Cache {
+        /**
+         * The fields to walk of a type
+         */
+        WALK_PLAN,
+        /**
+         * Whether the filters let instances of a type be walked
+         */
+        FILTER_VERDICT,
+        /**
+         * The shallow size of instances of a non array type
+         */
+        SHALLOW_SIZE
+    }
+
+    /**
+     * Invoked as a deep sizing call starts
+     *
+     * @param engine the name of the engine measuring shallow sizes
+     */
+    default void walkStarted(String engine) {
+    }
+
+    /**
+     * Invoked as a deep sizing call ends
+     *
+     * @param engine    the name of the engine that measured shallow sizes, as passed to {@link #walkStarted(String)}
+     * @param objects   the amount of objects visited, measured or not
+     * @param bytes     the size measured
+     * @param nanos     the time the call took
+     * @param truncated whether a tree mode walk got cut short for exceeding its object limit, and the graphs walked again
+     */
+    default void walkEnded(String engine, long objects, long bytes, long nanos, boolean truncated) {
+    }
+
+    /**
+     * Invoked when a type wasn't found in a cache, and what the cache holds had to be computed
+     *
+     * @param cache the cache
+     * @param type  the type looked up
+     */
+    default void cacheMissed(Cache cache, Class<?> type) {
+    }
+}
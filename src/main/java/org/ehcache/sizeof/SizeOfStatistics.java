@@ -0,0 +1,158 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import org.ehcache.sizeof.impl.JvmInformation;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what a {@link SizeOf} instance measures, using {@link LongAdder}s so that concurrent sizings don't contend on
+ * the counters
+ */
+final class SizeOfStatistics implements SizeOfMXBean {
+
+    private final SizeOf sizeOf;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder objectsVisited = new LongAdder();
+    private final LongAdder bytesMeasured = new LongAdder();
+    private final LongAdder nanosSpent = new LongAdder();
+    private final LongAdder walkPlanHits = new LongAdder();
+    private final LongAdder walkPlanMisses = new LongAdder();
+    private final LongAdder filterVerdictHits = new LongAdder();
+    private final LongAdder filterVerdictMisses = new LongAdder();
+    private final LongAdder shallowSizeHits = new LongAdder();
+    private final LongAdder shallowSizeMisses = new LongAdder();
+    private final LongAdder truncatedWalks = new LongAdder();
+
+    SizeOfStatistics(final SizeOf sizeOf) {
+        this.sizeOf = sizeOf;
+    }
+
+    void measured(final long bytes, final long nanos) {
+        calls.increment();
+        bytesMeasured.add(bytes);
+        nanosSpent.add(nanos);
+    }
+
+    void walked(final long objects) {
+        objectsVisited.add(objects);
+    }
+
+    void walkPlan(final boolean hit) {
+        (hit ? walkPlanHits : walkPlanMisses).increment();
+    }
+
+    void filterVerdict(final boolean hit) {
+        (hit ? filterVerdictHits : filterVerdictMisses).increment();
+    }
+
+    void shallowSize(final boolean hit) {
+        (hit ? shallowSizeHits : shallowSizeMisses).increment();
+    }
+
+    void truncated() {
+        truncatedWalks.increment();
+    }
+
+    @Override
+    public String getEngine() {
+        return sizeOf.getEngineName();
+    }
+
+    @Override
+    public String getJvmInformation() {
+        return JvmInformation.current().getJvmDescription();
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getObjectsVisited() {
+        return objectsVisited.sum();
+    }
+
+    @Override
+    public long getBytesMeasured() {
+        return bytesMeasured.sum();
+    }
+
+    @Override
+    public long getNanosSpent() {
+        return nanosSpent.sum();
+    }
+
+    @Override
+    public long getWalkPlanHits() {
+        return walkPlanHits.sum();
+    }
+
+    @Override
+    public long getWalkPlanMisses() {
+        return walkPlanMisses.sum();
+    }
+
+    @Override
+    public double getWalkPlanHitRatio() {
+        return hitRatio(walkPlanHits, walkPlanMisses);
+    }
+
+    @Override
+    public long getFilterVerdictHits() {
+        return filterVerdictHits.sum();
+    }
+
+    @Override
+    public long getFilterVerdictMisses() {
+        return filterVerdictMisses.sum();
+    }
+
+    @Override
+    public double getFilterVerdictHitRatio() {
+        return hitRatio(filterVerdictHits, filterVerdictMisses);
+    }
+
+    @Override
+    public long getShallowSizeHits() {
+        return shallowSizeHits.sum();
+    }
+
+    @Override
+    public long getShallowSizeMisses() {
+        return shallowSizeMisses.sum();
+    }
+
+    @Override
+    public double getShallowSizeHitRatio() {
+        return hitRatio(shallowSizeHits, shallowSizeMisses);
+    }
+
+    @Override
+    public long getTruncatedWalks() {
+        return truncatedWalks.sum();
+    }
+
+    private static double hitRatio(final LongAdder hits, final LongAdder misses) {
+        final long hitCount = hits.sum();
+        final long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double)hitCount / total;
+    }
+}
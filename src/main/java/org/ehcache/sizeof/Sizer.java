@@ -0,0 +1,55 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Reads the references held by instances of a type without reflection. Typically generated at build time, for types
+ * annotated with {@link org.ehcache.sizeof.annotations.Sized}, by the {@code sizeof-processor} annotation processor.
+ * <p>
+ * Implementations are discovered using the {@link java.util.ServiceLoader} and used by the walk in place of reflective
+ * field access, as long as they read exactly the fields the configured filters leave to walk for that type.
+ *
+ * @param <T> the type whose instances are read
+ */
+public interface Sizer<T> {
+
+    /**
+     * The exact type this sizer reads instances of
+     *
+     * @return the type
+     */
+    Class<T> type();
+
+    /**
+     * The reference fields read by {@link #references(Object, Consumer)}, inherited ones included
+     *
+     * @return the fields
+     */
+    Collection<Field> fields();
+
+    /**
+     * Hands the value of each of {@link #fields()} of the instance over, null ones included
+     *
+     * @param instance   the instance to read
+     * @param references where to hand the values over to
+     */
+    void references(T instance, Consumer<Object> references);
+}
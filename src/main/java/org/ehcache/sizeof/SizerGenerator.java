@@ -0,0 +1,178 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.objectweb.asm.ClassWriter.COMPUTE_MAXS;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+/**
+ * Generates, at runtime, {@link Sizer}s reading the references held by instances of a type using {@link Unsafe} with
+ * the field offsets inlined as constants. Generated classes don't depend on the type they read, and are each defined in
+ * their own class loader, child of the one of this library, so that they can be collected along with their walk plan.
+ */
+@SuppressWarnings("restriction")
+final class SizerGenerator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SizerGenerator.class);
+
+    private static final String UNSAFE = Type.getInternalName(Unsafe.class);
+    private static final String UNSAFE_DESCRIPTOR = Type.getDescriptor(Unsafe.class);
+    private static final String CONSUMER = Type.getInternalName(Consumer.class);
+    private static final String CONSUMER_DESCRIPTOR = Type.getDescriptor(Consumer.class);
+    private static final String OBJECT_DESCRIPTOR = Type.getDescriptor(Object.class);
+    private static final String CLASS_DESCRIPTOR = Type.getDescriptor(Class.class);
+    private static final String COLLECTION_DESCRIPTOR = Type.getDescriptor(Collection.class);
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    private SizerGenerator() {
+        // not instantiable
+    }
+
+    /**
+     * Generates a sizer reading the given fields of instances of a type
+     *
+     * @param type   the type
+     * @param fields the fields to read
+     * @return the sizer, or null if it couldn't be generated
+     */
+    static Sizer<Object> generate(final Class<?> type, final Field[] fields) {
+        if (UnsafeAccess.UNSAFE == null) {
+            return null;
+        }
+        try {
+            final long[] offsets = new long[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                offsets[i] = UnsafeAccess.UNSAFE.objectFieldOffset(fields[i]);
+            }
+            final String name = "org/ehcache/sizeof/generated/" + type.getSimpleName() + "Sizer" + COUNTER.incrementAndGet();
+            final ReaderClassLoader loader = AccessController.doPrivileged((PrivilegedAction<ReaderClassLoader>)ReaderClassLoader::new);
+            final Class<?> sizerClass = loader.define(name.replace('/', '.'), generateSizer(name, offsets));
+            @SuppressWarnings("unchecked")
+            final Sizer<Object> sizer = (Sizer<Object>)sizerClass.getConstructor(Unsafe.class, Class.class, Collection.class)
+                .newInstance(UnsafeAccess.UNSAFE, type, Collections.unmodifiableList(Arrays.asList(fields.clone())));
+            return sizer;
+        } catch (Exception | LinkageError e) {
+            LOG.debug("Couldn't generate a sizer for {}, walking it using reflection", type.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Generates a {@link Sizer} handing the references at the offsets of the instance over. The sizer is generated as a
+     * whole, rather than delegated to, so that the walk calls straight into the generated code.
+     */
+    private static byte[] generateSizer(final String name, final long[] offsets) {
+        final ClassWriter cw = new ClassWriter(COMPUTE_MAXS);
+        cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, name, null, Type.getInternalName(Object.class),
+            new String[] { Type.getInternalName(Sizer.class) });
+        cw.visitField(ACC_PRIVATE | ACC_FINAL, "unsafe", UNSAFE_DESCRIPTOR, null, null).visitEnd();
+        cw.visitField(ACC_PRIVATE | ACC_FINAL, "type", CLASS_DESCRIPTOR, null, null).visitEnd();
+        cw.visitField(ACC_PRIVATE | ACC_FINAL, "fields", COLLECTION_DESCRIPTOR, null, null).visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(" + UNSAFE_DESCRIPTOR + CLASS_DESCRIPTOR + COLLECTION_DESCRIPTOR + ")V",
+            null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, Type.getInternalName(Object.class), "<init>", "()V", false);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitFieldInsn(PUTFIELD, name, "unsafe", UNSAFE_DESCRIPTOR);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitFieldInsn(PUTFIELD, name, "type", CLASS_DESCRIPTOR);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitFieldInsn(PUTFIELD, name, "fields", COLLECTION_DESCRIPTOR);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        generateGetter(cw, name, "type", CLASS_DESCRIPTOR);
+        generateGetter(cw, name, "fields", COLLECTION_DESCRIPTOR);
+
+        mv = cw.visitMethod(ACC_PUBLIC, "references", "(" + OBJECT_DESCRIPTOR + CONSUMER_DESCRIPTOR + ")V", null, null);
+        mv.visitCode();
+        for (long offset : offsets) {
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, name, "unsafe", UNSAFE_DESCRIPTOR);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitLdcInsn(offset);
+            mv.visitMethodInsn(INVOKEVIRTUAL, UNSAFE, "getObject", "(" + OBJECT_DESCRIPTOR + "J)" + OBJECT_DESCRIPTOR, false);
+            mv.visitMethodInsn(INVOKEINTERFACE, CONSUMER, "accept", "(" + OBJECT_DESCRIPTOR + ")V", true);
+        }
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void generateGetter(final ClassWriter cw, final String name, final String field, final String descriptor) {
+        final MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, field, "()" + descriptor, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, name, field, descriptor);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Defines a single generated class
+     */
+    private static final class ReaderClassLoader extends ClassLoader {
+
+        ReaderClassLoader() {
+            super(SizerGenerator.class.getClassLoader());
+        }
+
+        Class<?> define(final String name, final byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import org.ehcache.sizeof.util.WeakIdentityConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * The {@link Sizer}s found on the classpath, by the type they read. Sizers visible to the class loader of a type only,
+ * e.g. in an application server, are looked up through that class loader.
+ */
+final class Sizers {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Sizers.class);
+
+    private static final Map<Class<?>, Sizer<?>> SIZERS = load(Sizer.class.getClassLoader());
+    private static final WeakIdentityConcurrentMap<ClassLoader, Map<Class<?>, Sizer<?>>> SIZERS_BY_CLASS_LOADER =
+        new WeakIdentityConcurrentMap<>();
+
+    private Sizers() {
+        // not instantiable
+    }
+
+    /**
+     * The sizer for a type
+     *
+     * @param type the type
+     * @return the sizer, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    static Sizer<Object> get(Class<?> type) {
+        final Sizer<?> sizer = SIZERS.get(type);
+        if (sizer != null) {
+            return (Sizer<Object>)sizer;
+        }
+        final ClassLoader classLoader = type.getClassLoader();
+        if (classLoader == null || classLoader == Sizer.class.getClassLoader()) {
+            return null;
+        }
+        return (Sizer<Object>)loaded(classLoader).get(type);
+    }
+
+    private static Map<Class<?>, Sizer<?>> loaded(ClassLoader classLoader) {
+        final Map<Class<?>, Sizer<?>> sizers = SIZERS_BY_CLASS_LOADER.get(classLoader);
+        if (sizers != null) {
+            return sizers;
+        }
+        final Map<Class<?>, Sizer<?>> loaded = load(classLoader);
+        final Map<Class<?>, Sizer<?>> previous = SIZERS_BY_CLASS_LOADER.putIfAbsent(classLoader, loaded);
+        return previous == null ? loaded : previous;
+    }
+
+    static Map<Class<?>, Sizer<?>> load(ClassLoader classLoader) {
+        final Map<Class<?>, Sizer<?>> sizers = new HashMap<>();
+        final Iterator<Sizer> iterator = ServiceLoader.load(Sizer.class, classLoader).iterator();
+        while (true) {
+            try {
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                final Sizer<?> sizer = iterator.next();
+                sizers.put(sizer.type(), sizer);
+            } catch (ServiceConfigurationError e) {
+                LOG.warn("Couldn't load a Sizer, the type it reads will be walked using reflection", e);
+            }
+        }
+        return sizers;
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+
+/**
+ * Access to {@link Unsafe}, when available, to read fields the JVM prevents reflective access to, e.g. those of JDK internals
+ * on Java 16 and later unless their packages are opened using {@code --add-opens}
+ */
+@SuppressWarnings("restriction")
+final class UnsafeAccess {
+
+    /**
+     * The {@link Unsafe} instance, or null if not accessible on this platform
+     */
+    static final Unsafe UNSAFE;
+
+    static {
+        Unsafe unsafe;
+        try {
+            Field unsafeField = Unsafe.class.getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+            unsafe = (Unsafe)unsafeField.get(null);
+        } catch (Throwable t) {
+            unsafe = null;
+        }
+        UNSAFE = unsafe;
+    }
+
+    private UnsafeAccess() {
+        // not instantiable
+    }
+
+    /**
+     * The offset to read an instance field at
+     *
+     * @param field the instance field
+     * @return the offset, or a negative value if the field can't be read using Unsafe
+     */
+    static long objectFieldOffset(Field field) {
+        if (UNSAFE == null) {
+            return -1L;
+        }
+        try {
+            return UNSAFE.objectFieldOffset(field);
+        } catch (RuntimeException e) {
+            // fields of hidden classes and records
+            return -1L;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * What the {@link ObjectGraphWalker} needs to know about a type to walk its instances: the (filtered) reference fields to
+ * navigate, possibly through a {@link Sizer}, whether its instances are deeply immutable and, for types whose deep size is
+ * constant, that memoized size
+ */
+final class WalkPlan {
+
+    private static final long UNKNOWN_SIZE = -1L;
+
+    private final Field[] fields;
+    private final long[] unsafeOffsets;
+    private final boolean deeplyImmutable;
+    private volatile Sizer<Object> sizer;
+    private final AtomicBoolean promoted = new AtomicBoolean();
+    private int walks;
+
+    private volatile boolean fixedShapeResolved;
+    private volatile WalkPlan[] fixedShapePlans;
+    private volatile long fixedShapeSize = UNKNOWN_SIZE;
+
+    /**
+     * Constructor
+     *
+     * @param fields          the reference fields to walk
+     * @param unsafeOffsets   per field, the offset to read it at using Unsafe, or a negative value to read it reflectively;
+     *                        null if all fields are to be read reflectively
+     * @param deeplyImmutable whether instances of this type are deeply immutable
+     * @param sizer           the sizer reading exactly these fields, or null
+     */
+    WalkPlan(final Field[] fields, final long[] unsafeOffsets, final boolean deeplyImmutable, final Sizer<Object> sizer) {
+        this.fields = fields;
+        this.unsafeOffsets = unsafeOffsets;
+        this.deeplyImmutable = deeplyImmutable;
+        this.sizer = sizer;
+    }
+
+    /**
+     * The reference fields to walk for instances of this type
+     *
+     * @return the fields
+     */
+    Field[] getFields() {
+        return fields;
+    }
+
+    /**
+     * Reads one of {@link #getFields()} of an instance, reflectively or, if the JVM prevents that, using Unsafe
+     *
+     * @param index the index of the field
+     * @param obj   the instance
+     * @return the value of the field
+     */
+    Object readField(final int index, final Object obj) {
+        if (unsafeOffsets != null && unsafeOffsets[index] >= 0) {
+            return UnsafeAccess.UNSAFE.getObject(obj, unsafeOffsets[index]);
+        }
+        try {
+            return fields[index].get(obj);
+        } catch (IllegalAccessException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * The sizer to read the references of instances of this type with, rather than reflectively reading {@link #getFields()}
+     *
+     * @return the sizer, or null if the fields are to be read reflectively
+     */
+    Sizer<Object> getSizer() {
+        return sizer;
+    }
+
+    /**
+     * Counts a walk of an instance of this type, telling whether the type just got hot enough for a sizer to be generated.
+     * Only ever true once, for a single thread.
+     *
+     * @param threshold the amount of instances to walk before generating a sizer
+     * @return true if a sizer is to be generated, and then {@link #promote(Sizer)} be called
+     */
+    boolean shouldPromote(final int threshold) {
+        // the count is racy on purpose, missing a few walks only delays the promotion
+        return !promoted.get() && ++walks >= threshold && promoted.compareAndSet(false, true);
+    }
+
+    /**
+     * Records the outcome of the generation of a sizer for this type
+     *
+     * @param generated the sizer generated, or null if it couldn't be
+     */
+    void promote(final Sizer<Object> generated) {
+        if (generated != null) {
+            this.sizer = generated;
+        }
+    }
+
+    /**
+     * Whether instances of this type, and their entire graph, never change once constructed
+     *
+     * @return true if the deep size of an instance can be memoized
+     */
+    boolean isDeeplyImmutable() {
+        return deeplyImmutable;
+    }
+
+    /**
+     * Whether the fixed shape analysis has been performed for this type yet
+     *
+     * @return true if {@link #getFixedShapePlans()} can be trusted
+     */
+    boolean isFixedShapeResolved() {
+        return fixedShapeResolved;
+    }
+
+    /**
+     * The plans of the types referenced by each of {@link #getFields()}, if this type is of fixed shape
+     *
+     * @return the plans, index aligned with the fields, or null if this type isn't of fixed shape
+     */
+    WalkPlan[] getFixedShapePlans() {
+        return fixedShapePlans;
+    }
+
+    /**
+     * Records the outcome of the fixed shape analysis
+     *
+     * @param plans the plans of the referenced types, or null if this type isn't of fixed shape
+     */
+    void resolveFixedShape(final WalkPlan[] plans) {
+        this.fixedShapePlans = plans;
+        this.fixedShapeResolved = true;
+    }
+
+    /**
+     * The memoized deep size of a fully populated instance of this fixed shape type
+     *
+     * @return the size in bytes, or a negative value if not yet known
+     */
+    long getFixedShapeSize() {
+        return fixedShapeSize;
+    }
+
+    /**
+     * Memoizes the deep size of a fully populated instance of this fixed shape type
+     *
+     * @param size the size in bytes
+     */
+    void setFixedShapeSize(final long size) {
+        this.fixedShapeSize = size;
+    }
+}
@@ -17,6 +17,7 @@
 package org.ehcache.sizeof.filters;
 
 import org.ehcache.sizeof.annotations.AnnotationProxyFactory;
+import org.ehcache.sizeof.annotations.DeeplyImmutable;
 import org.ehcache.sizeof.annotations.IgnoreSizeOf;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -87,6 +88,14 @@ public final class AnnotationSizeOfFilter implements SizeOfFilter {
         return !classAnnotated && !packageAnnotated;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDeeplyImmutable(Class<?> klazz) {
+        return klazz.isAnnotationPresent(DeeplyImmutable.class);
+    }
+
     private boolean isAnnotationPresentOrInherited(final Class<?> instanceKlazz) {
         Class<?> klazz = instanceKlazz;
         while (klazz != null) {
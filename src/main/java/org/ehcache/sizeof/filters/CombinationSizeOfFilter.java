@@ -59,4 +59,16 @@ public class CombinationSizeOfFilter implements SizeOfFilter {
         }
         return true;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isDeeplyImmutable(Class<?> klazz) {
+        for (SizeOfFilter filter : filters) {
+            if (filter.isDeeplyImmutable(klazz)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
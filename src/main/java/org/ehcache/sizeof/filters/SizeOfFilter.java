@@ -43,4 +43,15 @@ public interface SizeOfFilter {
      * @return true, if to be filtered out
      */
     boolean filterClass(Class<?> klazz);
+
+    /**
+     * Checks whether instances of the type, and everything they reference, never change once constructed.
+     * The deep size of such instances only gets measured once per instance.
+     *
+     * @param klazz the type
+     * @return true, if deeply immutable
+     */
+    default boolean isDeeplyImmutable(Class<?> klazz) {
+        return false;
+    }
 }
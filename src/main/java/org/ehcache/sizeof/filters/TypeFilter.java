@@ -31,6 +31,7 @@ public class TypeFilter implements SizeOfFilter {
     private final WeakIdentityConcurrentMap<Class<?>, Object> classesIgnored = new WeakIdentityConcurrentMap<>();
     private final WeakIdentityConcurrentMap<Class<?>, Object> superClasses = new WeakIdentityConcurrentMap<>();
     private final WeakIdentityConcurrentMap<Class<?>, ConcurrentMap<Field, Object>> fieldsIgnored = new WeakIdentityConcurrentMap<>();
+    private final WeakIdentityConcurrentMap<Class<?>, Object> deeplyImmutableClasses = new WeakIdentityConcurrentMap<>();
 
     @Override
     public Collection<Field> filterFields(final Class<?> klazz, final Collection<Field> fields) {
@@ -44,11 +45,9 @@ public class TypeFilter implements SizeOfFilter {
     @Override
     public boolean filterClass(final Class<?> klazz) {
         if (!classesIgnored.containsKey(klazz)) {
-            for (Class<?> aClass : superClasses.keySet()) {
-                if (aClass.isAssignableFrom(klazz)) {
-                    classesIgnored.put(klazz, this);
-                    return false;
-                }
+            if (superClasses.anyKeyMatches(aClass -> aClass.isAssignableFrom(klazz))) {
+                classesIgnored.put(klazz, this);
+                return false;
             }
             return true;
         } else {
@@ -56,6 +55,11 @@ public class TypeFilter implements SizeOfFilter {
         }
     }
 
+    @Override
+    public boolean isDeeplyImmutable(final Class<?> klazz) {
+        return deeplyImmutableClasses.containsKey(klazz);
+    }
+
     public void addClass(final Class<?> classToFilterOut, final boolean strict) {
         if (!strict) {
             superClasses.putIfAbsent(classToFilterOut, this);
@@ -76,4 +80,8 @@ public class TypeFilter implements SizeOfFilter {
         }
         fields.put(fieldToFilterOut, this);
     }
+
+    public void addDeeplyImmutableClass(final Class<?> deeplyImmutableClass) {
+        deeplyImmutableClasses.put(deeplyImmutableClass, this);
+    }
 }
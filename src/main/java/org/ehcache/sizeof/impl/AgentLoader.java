@@ -17,11 +17,12 @@
 package org.ehcache.sizeof.impl;
 
 
+import org.ehcache.sizeof.SizeOf;
+import org.ehcache.sizeof.util.WeakIdentityConcurrentMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.instrument.Instrumentation;
@@ -30,11 +31,22 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.security.AccessController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * This will try to load the agent using the Attach API of JDK6.
@@ -54,8 +66,15 @@ final class AgentLoader {
     private static final Method VIRTUAL_MACHINE_LOAD_AGENT;
 
     private static volatile Instrumentation instrumentation;
+    private static CompletableFuture<Boolean> backgroundLoading;
+    private static Boolean warmingUp;
+
+    private static final WeakIdentityConcurrentMap<SizeOf, BiConsumer<SizeOf, Class<?>>> WARMED_UP = new WeakIdentityConcurrentMap<>();
+    private static final WeakIdentityConcurrentMap<Class<?>, Boolean> WARM_UP_CLASSES = new WeakIdentityConcurrentMap<>();
 
     static final String INSTRUMENTATION_INSTANCE_SYSTEM_PROPERTY_NAME = "org.ehcache.sizeof.agent.instrumentation";
+    static final String AGENT_CACHE_DIRECTORY = "org.ehcache.sizeof.agent.cacheDir";
+    static final String AGENT_OPTIONS = "org.ehcache.sizeof.agent.options";
 
     static {
         Method attach = null;
@@ -65,7 +84,7 @@ final class AgentLoader {
             Class<?> virtualMachineClass = getVirtualMachineClass();
             attach = virtualMachineClass.getMethod("attach", String.class);
             detach = virtualMachineClass.getMethod("detach");
-            loadAgent = virtualMachineClass.getMethod("loadAgent", String.class);
+            loadAgent = virtualMachineClass.getMethod("loadAgent", String.class, String.class);
         } catch (Throwable e) {
             LOGGER.info("Unavailable or unrecognised attach API : {}", e.toString());
         }
@@ -135,7 +154,7 @@ final class AgentLoader {
                         File agent = getAgentFile();
                         LOGGER.info("Trying to load agent @ {}", agent);
                         if (agent != null) {
-                            VIRTUAL_MACHINE_LOAD_AGENT.invoke(vm, agent.getAbsolutePath());
+                            VIRTUAL_MACHINE_LOAD_AGENT.invoke(vm, agent.getAbsolutePath(), System.getProperty(AGENT_OPTIONS));
                         }
                     } finally {
                         VIRTUAL_MACHINE_DETACH.invoke(vm);
@@ -150,12 +169,94 @@ final class AgentLoader {
             final boolean b = agentIsAvailable();
             if (b) {
                 LOGGER.info("Agent successfully loaded and available!");
+                logAgentWarnings();
             }
 
             return b;
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private static void logAgentWarnings() {
+        try {
+            Class<?> sizeOfAgentClass = ClassLoader.getSystemClassLoader().loadClass(SIZEOF_AGENT_CLASSNAME);
+            for (String warning : (List<String>)sizeOfAgentClass.getMethod("drainWarnings").invoke(null)) {
+                LOGGER.warn(warning);
+            }
+        } catch (Throwable t) {
+            LOGGER.debug("The loaded agent doesn't report warnings: {}", t.toString());
+        }
+    }
+
+    /**
+     * Attempts to load the agent through the Attach API, from a daemon thread
+     *
+     * @return completes with whether the agent got loaded, shared by all callers
+     */
+    static synchronized CompletableFuture<Boolean> loadAgentInBackground() {
+        if (backgroundLoading == null) {
+            final CompletableFuture<Boolean> loading = new CompletableFuture<>();
+            final Thread loader = new Thread(() -> loading.complete(loadAgent()), "ehcache-sizeof-agent-loader");
+            loader.setDaemon(true);
+            loader.start();
+            backgroundLoading = loading;
+        }
+        return backgroundLoading;
+    }
+
+    /**
+     * Warms up, for a SizeOf instance, the classes the agent was configured to warm up: the ones loaded already, and the
+     * ones loaded from then on, for as long as the instance is reachable. Classes get warmed up in parallel, off the
+     * calling thread.
+     *
+     * @param sizeOf the instance
+     * @param warmUp warms up a class for the instance it's passed, so as not to reference the instance itself
+     */
+    static void warmUpLoadedClasses(SizeOf sizeOf, BiConsumer<SizeOf, Class<?>> warmUp) {
+        if (listenForWarmUp()) {
+            WARMED_UP.put(sizeOf, warmUp);
+            for (Class<?> type : WARM_UP_CLASSES.keySet()) {
+                warmUp(sizeOf, warmUp, type);
+            }
+        }
+    }
+
+    private static synchronized boolean listenForWarmUp() {
+        if (warmingUp == null && agentIsAvailable()) {
+            try {
+                Class<?> sizeOfAgentClass = ClassLoader.getSystemClassLoader().loadClass(SIZEOF_AGENT_CLASSNAME);
+                Consumer<Class<?>> listener = AgentLoader::warmUpLoadedClass;
+                sizeOfAgentClass.getMethod("addWarmUpListener", Consumer.class).invoke(null, listener);
+                warmingUp = true;
+            } catch (Throwable t) {
+                LOGGER.debug("The loaded agent doesn't warm classes up: {}", t.toString());
+                warmingUp = false;
+            }
+        }
+        return warmingUp != null && warmingUp;
+    }
+
+    private static void warmUpLoadedClass(Class<?> type) {
+        if (WARM_UP_CLASSES.putIfAbsent(type, Boolean.TRUE) == null) {
+            for (SizeOf sizeOf : WARMED_UP.keySet()) {
+                BiConsumer<SizeOf, Class<?>> warmUp = WARMED_UP.get(sizeOf);
+                if (warmUp != null) {
+                    warmUp(sizeOf, warmUp, type);
+                }
+            }
+        }
+    }
+
+    private static void warmUp(SizeOf sizeOf, BiConsumer<SizeOf, Class<?>> warmUp, Class<?> type) {
+        ForkJoinPool.commonPool().execute(() -> {
+            try {
+                warmUp.accept(sizeOf, type);
+            } catch (Throwable t) {
+                LOGGER.debug("Couldn't warm up {}: {}", type.getName(), t.toString());
+            }
+        });
+    }
+
     private static void warnIfOSX() {
         if (JvmInformation.isOSX() && System.getProperty("java.io.tmpdir") != null) {
             LOGGER.warn("Loading the SizeOfAgent will probably fail, as you are running on Apple OS X and have a value set for java.io.tmpdir\n" +
@@ -173,23 +274,116 @@ final class AgentLoader {
         } else if (agent.getProtocol().equals("file")) {
             return new File(agent.getFile());
         } else {
-            File temp = File.createTempFile("ehcache-sizeof-agent", ".jar");
-            try (FileOutputStream fout = new FileOutputStream(temp); InputStream in = agent.openStream()) {
-                byte[] buffer = new byte[1024];
-                while (true) {
-                    int read = in.read(buffer);
-                    if (read < 0) {
-                        break;
-                    } else {
-                        fout.write(buffer, 0, read);
-                    }
-                }
-            } finally {
-                temp.deleteOnExit();
+            try {
+                return extractAgent(agent, getAgentCacheDirectory());
+            } catch (IOException | SecurityException e) {
+                LOGGER.info("Couldn't extract the agent jar to the cache directory: {}", e.toString());
+            }
+            Path temp = Files.createTempFile("ehcache-sizeof-agent", ".jar");
+            temp.toFile().deleteOnExit();
+            try (InputStream in = agent.openStream()) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
             }
             LOGGER.info("Extracted agent jar to temporary file {}", temp);
-            return temp;
+            return temp.toFile();
+        }
+    }
+
+    /**
+     * Extracts the agent jar to the directory, under a name derived from its content, unless a previous run (of this or
+     * any other JVM) already did. The jar is written to a temporary file of the directory first, then renamed, so that
+     * concurrent extractions never expose a partially written jar.
+     *
+     * @param agent     the agent jar
+     * @param directory the directory to extract it to
+     * @return the extracted jar
+     * @throws IOException if the jar couldn't be extracted
+     */
+    static File extractAgent(URL agent, Path directory) throws IOException {
+        final String digest;
+        try (InputStream in = agent.openStream()) {
+            digest = digest(in);
+        }
+        final Path target = directory.resolve("sizeof-agent-" + digest + ".jar");
+        if (isExtracted(target, digest)) {
+            return target.toFile();
+        }
+        Files.createDirectories(directory);
+        final Path temp = Files.createTempFile(directory, "sizeof-agent-", ".tmp");
+        try {
+            try (InputStream in = agent.openStream()) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                // the target might be held open by a JVM that extracted it concurrently
+                if (!isExtracted(target, digest)) {
+                    throw e;
+                }
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        LOGGER.info("Extracted agent jar to {}", target);
+        return target.toFile();
+    }
+
+    private static boolean isExtracted(Path jar, String digest) {
+        if (!Files.isRegularFile(jar)) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(jar)) {
+            return digest.equals(digest(in));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static String digest(InputStream in) throws IOException {
+        final MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        final byte[] buffer = new byte[8192];
+        for (int read; (read = in.read(buffer)) >= 0; ) {
+            sha.update(buffer, 0, read);
+        }
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : sha.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * The directory the agent jar gets extracted to: the one named by the {@link #AGENT_CACHE_DIRECTORY} system property,
+     * or {@code ehcache-sizeof} in the user's cache directory
+     */
+    private static Path getAgentCacheDirectory() {
+        final String configured = System.getProperty(AGENT_CACHE_DIRECTORY);
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        final String home = System.getProperty("user.home");
+        final String os = System.getProperty("os.name", "");
+        final String xdgCacheHome = System.getenv("XDG_CACHE_HOME");
+        final String localAppData = System.getenv("LOCALAPPDATA");
+        final Path cache;
+        if (xdgCacheHome != null && !xdgCacheHome.isEmpty()) {
+            cache = Paths.get(xdgCacheHome);
+        } else if (localAppData != null && !localAppData.isEmpty() && os.startsWith("Windows")) {
+            cache = Paths.get(localAppData);
+        } else if (os.startsWith("Mac")) {
+            cache = Paths.get(home, "Library", "Caches");
+        } else {
+            cache = Paths.get(home, ".cache");
         }
+        return cache.resolve("ehcache-sizeof");
     }
 
     /**
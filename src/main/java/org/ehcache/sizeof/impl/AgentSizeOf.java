@@ -19,7 +19,7 @@ package org.ehcache.sizeof.impl;
 import org.ehcache.sizeof.SizeOf;
 import org.ehcache.sizeof.filters.SizeOfFilter;
 
-import static org.ehcache.sizeof.impl.JvmInformation.CURRENT_JVM_INFORMATION;
+import static org.ehcache.sizeof.impl.ObjectLayout.CURRENT_LAYOUT;
 
 /**
  * SizeOf implementation that relies on a Java agent to be loaded to do the measurement
@@ -80,10 +80,18 @@ public class AgentSizeOf extends SizeOf {
         }
     }
 
+    /**
+     * Starts warming up, off the calling thread, the classes the agent was configured to warm up, for as long as this
+     * instance is reachable. {@link SizeOf#newInstance} does so for the instances it returns.
+     */
+    public void warmUpLoadedClasses() {
+        AgentLoader.warmUpLoadedClasses(this, (sizeOf, type) -> ((AgentSizeOf)sizeOf).warmUp(type));
+    }
+
     @Override
     public long sizeOf(Object obj) {
         final long measuredSize = AgentLoader.agentSizeOf(obj);
-        return Math.max(CURRENT_JVM_INFORMATION.getMinimumObjectSize(),
-            measuredSize + CURRENT_JVM_INFORMATION.getAgentSizeOfAdjustment());
+        return Math.max(CURRENT_LAYOUT.getMinimumObjectSize(),
+            measuredSize + CURRENT_LAYOUT.getAgentSizeOfAdjustment());
     }
 }
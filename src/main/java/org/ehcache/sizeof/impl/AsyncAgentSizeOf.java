@@ -0,0 +1,132 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.impl;
+
+import org.ehcache.sizeof.SizeOf;
+import org.ehcache.sizeof.filters.SizeOfFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.ehcache.sizeof.impl.ObjectLayout.CURRENT_LAYOUT;
+
+/**
+ * SizeOf implementation that doesn't wait for the Java agent to be loaded: shallow sizes are measured using
+ * {@link UnsafeSizeOf}, or {@link ReflectionSizeOf} if Unsafe isn't accessible, while the agent gets loaded in the
+ * background. As soon as it is available, shallow sizes are measured by the agent, the sizes cached per class until then
+ * being measured again.
+ */
+public class AsyncAgentSizeOf extends SizeOf {
+
+    /**
+     * System property name to have {@link SizeOf#newInstance} not block on loading the Java agent, but rather return an
+     * {@code AsyncAgentSizeOf}.
+     */
+    public static final String ASYNC_LOADING = "org.ehcache.sizeof.AgentSizeOf.async";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncAgentSizeOf.class);
+
+    private final SizeOf fallback;
+    private final CompletableFuture<Boolean> agentLoading;
+    private final AtomicBoolean switched = new AtomicBoolean();
+    private volatile boolean agentInUse;
+
+    /**
+     * Builds a new SizeOf that will not filter fields and will cache reflected fields
+     *
+     * @see #AsyncAgentSizeOf(SizeOfFilter, boolean, boolean)
+     */
+    public AsyncAgentSizeOf() {
+        this(new PassThroughFilter());
+    }
+
+    /**
+     * Builds a new SizeOf that will filter fields according to the provided filter and will cache reflected fields
+     *
+     * @param filter The filter to apply
+     * @see #AsyncAgentSizeOf(SizeOfFilter, boolean, boolean)
+     * @see org.ehcache.sizeof.filters.SizeOfFilter
+     */
+    public AsyncAgentSizeOf(SizeOfFilter filter) {
+        this(filter, true, true);
+    }
+
+    /**
+     * Builds a new SizeOf that will filter fields according to the provided filter, and starts loading the agent
+     * in the background unless that's already done
+     *
+     * @param filter            The filter to apply
+     * @param caching           whether to cache reflected fields
+     * @param bypassFlyweight   whether "Flyweight Objects" are to be ignored
+     * @see SizeOfFilter
+     */
+    public AsyncAgentSizeOf(SizeOfFilter filter, boolean caching, boolean bypassFlyweight) {
+        super(filter, caching, bypassFlyweight);
+        this.fallback = newFallback(filter, bypassFlyweight);
+        this.agentLoading = AgentLoader.loadAgentInBackground();
+        if (agentLoading.getNow(false)) {
+            switched.set(true);
+            agentInUse = true;
+        } else {
+            // doesn't keep instances no longer used around, for as long as the agent is loading
+            final WeakReference<AsyncAgentSizeOf> self = new WeakReference<>(this);
+            agentLoading.thenRun(() -> {
+                final AsyncAgentSizeOf sizeOf = self.get();
+                if (sizeOf != null) {
+                    sizeOf.switchToAgent();
+                }
+            });
+        }
+    }
+
+    private static SizeOf newFallback(SizeOfFilter filter, boolean bypassFlyweight) {
+        try {
+            return new UnsafeSizeOf(filter, false, bypassFlyweight);
+        } catch (UnsupportedOperationException e) {
+            return new ReflectionSizeOf(filter, false, bypassFlyweight);
+        }
+    }
+
+    @Override
+    public long sizeOf(Object obj) {
+        if (agentInUse) {
+            final long measuredSize = AgentLoader.agentSizeOf(obj);
+            return Math.max(CURRENT_LAYOUT.getMinimumObjectSize(),
+                measuredSize + CURRENT_LAYOUT.getAgentSizeOfAdjustment());
+        } else {
+            return fallback.sizeOf(obj);
+        }
+    }
+
+    @Override
+    protected String getEngineName() {
+        return agentInUse ? AgentSizeOf.class.getName() : fallback.getClass().getName();
+    }
+
+    private void switchToAgent() {
+        if (agentLoading.getNow(false) && switched.compareAndSet(false, true)) {
+            // sizes measured by the fallback from now on only end up in the invalidated cache
+            agentInUse = true;
+            invalidateCachedSizes();
+            LOGGER.info("Agent loaded, measuring shallow sizes using it from now on");
+            AgentLoader.warmUpLoadedClasses(this, (sizeOf, type) -> ((AsyncAgentSizeOf)sizeOf).warmUp(type));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.impl;
+
+/**
+ * Declares the constant {@link JvmInformation} inherits for compatibility. Unlike those of a class, the fields of an
+ * interface only get initialized once used, so that only code reading the constant detects the current JVM by doing so.
+ */
+interface CurrentJvmInformation {
+
+    /**
+     * The JvmInformation instance representing the current JVM
+     *
+     * @deprecated use {@link JvmInformation#current()}
+     */
+    @Deprecated
+    JvmInformation CURRENT_JVM_INFORMATION = JvmInformation.current();
+}
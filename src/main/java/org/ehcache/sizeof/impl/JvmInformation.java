@@ -16,16 +16,12 @@
  */
 package org.ehcache.sizeof.impl;
 
+import com.sun.management.HotSpotDiagnosticMXBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
 
-import javax.management.MBeanServer;
-import javax.management.ObjectName;
-import javax.management.openmbean.CompositeData;
-
 /**
  * Detects and represents JVM-specific properties that relate to the memory
  * data model for java objects that are useful for size of calculations.
@@ -33,7 +29,7 @@ import javax.management.openmbean.CompositeData;
  * @author jhouse
  * @author Chris Dennis
  */
-public enum JvmInformation {
+public enum JvmInformation implements CurrentJvmInformation {
 
     /**
      * Represents Generic 32-bit
@@ -340,22 +336,12 @@ public enum JvmInformation {
         }
     };
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(JvmInformation.class);
 
     /**
-     * The JvmInformation instance representing the current JVM
+     * System property naming the constant to use, bypassing detection (e.g. {@code HOTSPOT_64_BIT_WITH_COMPRESSED_OOPS})
      */
-    public static final JvmInformation CURRENT_JVM_INFORMATION;
-
-    private static final Logger LOGGER = LoggerFactory.getLogger(JvmInformation.class);
-
-    private static final long TWENTY_FIVE_GB = 25L * 1024L * 1024L * 1024L;
-    private static final long FIFTY_SEVEN_GB = 57L * 1024L * 1024L * 1024L;
-
-
-    static {
-        CURRENT_JVM_INFORMATION = getJvmInformation();
-        LOGGER.info("Detected JVM data model settings of: " + CURRENT_JVM_INFORMATION.getJvmDescription());
-    }
+    private static final String JVM_INFORMATION_OVERRIDE = "org.ehcache.sizeof.jvmInformation";
 
     private JvmInformation parent;
 
@@ -438,6 +424,32 @@ public enum JvmInformation {
      */
     public abstract String getJvmDescription();
 
+    /**
+     * The JvmInformation instance representing the current JVM, detected on first use. Prefer it over the deprecated
+     * {@code CURRENT_JVM_INFORMATION} constant.
+     *
+     * @return the current JVM's information
+     */
+    public static JvmInformation current() {
+        return Current.JVM_INFORMATION;
+    }
+
+    /**
+     * The JvmInformation configured through the {@code org.ehcache.sizeof.jvmInformation} system property, if any.
+     */
+    private static JvmInformation getOverriddenJvmInformation() {
+        String name = System.getProperty(JVM_INFORMATION_OVERRIDE);
+        if (name == null) {
+            return null;
+        }
+        try {
+            return JvmInformation.valueOf(name.trim());
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Ignoring unknown " + JVM_INFORMATION_OVERRIDE + " value of " + name + ", detecting the JVM data model");
+            return null;
+        }
+    }
+
     /**
      * Determine the JvmInformation for the current JVM.
      */
@@ -533,27 +545,6 @@ public enum JvmInformation {
         return jif;
     }
 
-    private static boolean isJRockit64GBCompression() {
-        if (getJRockitVmArgs().contains("-XXcompressedRefs:enable=false")) {
-            return false;
-        }
-        if (getJRockitVmArgs().contains("-XXcompressedRefs:size=4GB") ||
-            getJRockitVmArgs().contains("-XXcompressedRefs:size=32GB")) {
-            return false;
-        }
-
-        if (getJRockitVmArgs().contains("-XXcompressedRefs:size=64GB")) {
-            return true;
-        }
-        long maxMemory = Runtime.getRuntime().maxMemory();
-        if (maxMemory > TWENTY_FIVE_GB && maxMemory <= FIFTY_SEVEN_GB
-            && getJRockitVmArgs().contains("-XXcompressedRefs:enable=true")) {
-            return true;
-        }
-
-        return false;
-    }
-
     /**
      * Returns true if VM is JRockit
      *
@@ -614,42 +605,23 @@ public enum JvmInformation {
         }
     }
 
-    private static String getHotSpotVmOptionValue(String name) {
-        try {
-            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
-            ObjectName beanName = ObjectName.getInstance("com.sun.management:type=HotSpotDiagnostic");
-            Object vmOption = server.invoke(beanName, "getVMOption", new Object[] { name }, new String[] { "java.lang.String" });
-            return (String)((CompositeData)vmOption).get("value");
-        } catch (Throwable t) {
-            return null;
-        }
-    }
-
-    private static String getPlatformMBeanAttribute(String beanName, String attrName) {
+    /**
+     * The value of a HotSpot VM option, as reported by the {@code HotSpotDiagnosticMXBean}, looked up directly rather than
+     * through the platform MBean server
+     *
+     * @param name the option's name
+     * @return the option's value, or null if the option or the MXBean aren't available
+     */
+    static String getHotSpotVmOptionValue(String name) {
         try {
-            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
-            ObjectName name = ObjectName.getInstance(beanName);
-            Object attr = server.getAttribute(name, attrName);
-            if (attr != null) {
-                return attr.toString();
-            }
-            return null;
+            return HotSpotDiagnostic.getVMOptionValue(name);
         } catch (Throwable t) {
             return null;
         }
     }
 
-    private static String getJRockitVmArgs() {
-        return getPlatformMBeanAttribute("oracle.jrockit.management:type=PerfCounters", "java.rt.vmArgs");
-    }
-
     private static boolean isHotspotConcurrentMarkSweepGC() {
-        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
-            if ("ConcurrentMarkSweep".equals(bean.getName())) {
-                return true;
-            }
-        }
-        return false;
+        return Boolean.parseBoolean(getHotSpotVmOptionValue("UseConcMarkSweepGC"));
     }
 
     private static boolean is64Bit() {
@@ -668,4 +640,36 @@ public enum JvmInformation {
         }
         return false;
     }
+
+    /**
+     * Holds the {@code HotSpotDiagnosticMXBean}, looked up on first use, and isolates the references to it from JVMs
+     * that don't have it
+     */
+    private static final class HotSpotDiagnostic {
+
+        private static final HotSpotDiagnosticMXBean BEAN = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+
+        static String getVMOptionValue(String name) {
+            return BEAN == null ? null : BEAN.getVMOption(name).getValue();
+        }
+    }
+
+    /**
+     * Detects the current JVM on first use, rather than as soon as any constant or helper of this enum gets used
+     */
+    private static final class Current {
+
+        static final JvmInformation JVM_INFORMATION;
+
+        static {
+            final JvmInformation overridden = getOverriddenJvmInformation();
+            if (overridden != null) {
+                JVM_INFORMATION = overridden;
+                LOGGER.info("Using configured JVM data model settings of: " + JVM_INFORMATION.getJvmDescription());
+            } else {
+                JVM_INFORMATION = getJvmInformation();
+                LOGGER.info("Detected JVM data model settings of: " + JVM_INFORMATION.getJvmDescription());
+            }
+        }
+    }
 }
@@ -0,0 +1,132 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sun.misc.Unsafe;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * Measures the layout of objects on the heap of the current JVM, using the field offsets and array base offsets
+ * {@link Unsafe} reports for synthetic probe classes, as well as the sizes reported by the agent's
+ * {@link java.lang.instrument.Instrumentation} when it is available.
+ */
+@SuppressWarnings("restriction")
+final class LayoutCalibration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LayoutCalibration.class);
+
+    private static final int MAX_PROBED_ARRAY_LENGTH = 64;
+
+    private LayoutCalibration() {
+        // not instantiable
+    }
+
+    /**
+     * Measures the layout of the current JVM
+     *
+     * @param jvmInformation the JVM, as identified
+     * @param unsafe         the {@link Unsafe} instance, or null if not available
+     * @param agentSizeOf    the sizes the agent measures, or null if it isn't available
+     * @return the measured layout, or null if it can't be measured
+     */
+    static ObjectLayout calibrate(JvmInformation jvmInformation, Unsafe unsafe, ToLongFunction<Object> agentSizeOf) {
+        if (unsafe == null) {
+            return null;
+        }
+        try {
+            final int pointerSize = unsafe.addressSize();
+            final int javaPointerSize = unsafe.arrayIndexScale(Object[].class);
+            final int objectHeaderSize = (int)unsafe.objectFieldOffset(ByteProbe.class.getDeclaredField("value"));
+            final int arrayHeaderSize = unsafe.arrayBaseOffset(int[].class);
+            final boolean compactFieldLayout = unsafe.objectFieldOffset(GapFillingProbe.class.getDeclaredField("value"))
+                                               < unsafe.objectFieldOffset(GapLeavingProbe.class.getDeclaredField("value"));
+
+            final int objectAlignment;
+            final int minimumObjectSize;
+            final int fieldOffsetAdjustment;
+            if (agentSizeOf == null) {
+                objectAlignment = jvmInformation.getObjectAlignment();
+                minimumObjectSize = align(objectHeaderSize, objectAlignment);
+                fieldOffsetAdjustment = 0;
+            } else {
+                objectAlignment = measureAlignment(agentSizeOf);
+                minimumObjectSize = (int)agentSizeOf.applyAsLong(new Object());
+                // what UnsafeSizeOf is missing, if anything, to match the agent
+                fieldOffsetAdjustment = (int)(agentSizeOf.applyAsLong(new ByteProbe())
+                                              - align(objectHeaderSize + PrimitiveType.BYTE.getSize(), objectAlignment));
+            }
+
+            final ObjectLayout layout = new ObjectLayout(jvmInformation, jvmInformation.getJvmDescription()
+                + " (calibrated" + (agentSizeOf == null ? "" : " using the agent") + ": " + objectHeaderSize + " byte headers, "
+                + javaPointerSize + " byte references, " + objectAlignment + " byte object alignment)",
+                pointerSize, javaPointerSize, objectHeaderSize, arrayHeaderSize, objectAlignment, minimumObjectSize,
+                compactFieldLayout, fieldOffsetAdjustment, 0);
+            LOGGER.debug("Calibrated object layout: {}", layout);
+            return layout;
+        } catch (Throwable t) {
+            LOGGER.debug("Couldn't calibrate the object layout, using the defaults of {}", jvmInformation, t);
+            return null;
+        }
+    }
+
+    /**
+     * The smallest step between the sizes of byte arrays of increasing lengths
+     */
+    private static int measureAlignment(ToLongFunction<Object> agentSizeOf) {
+        long previous = agentSizeOf.applyAsLong(new byte[0]);
+        long alignment = Long.MAX_VALUE;
+        for (int length = 1; length <= MAX_PROBED_ARRAY_LENGTH; length++) {
+            final long size = agentSizeOf.applyAsLong(new byte[length]);
+            if (size != previous) {
+                alignment = Math.min(alignment, size - previous);
+                previous = size;
+            }
+        }
+        return alignment == Long.MAX_VALUE ? 8 : (int)alignment;
+    }
+
+    private static int align(int size, int alignment) {
+        return (size + alignment - 1) / alignment * alignment;
+    }
+
+    /**
+     * A single field, laid out right after the header
+     */
+    private static final class ByteProbe {
+        @SuppressWarnings("unused")
+        private byte value;
+    }
+
+    /**
+     * A long field, leaving a gap after the header when it isn't 8 bytes aligned
+     */
+    private static class GapLeavingProbe {
+        @SuppressWarnings("unused")
+        private long value;
+    }
+
+    /**
+     * An int field, that lands in the gap left by its superclass when the JVM fills these
+     */
+    private static final class GapFillingProbe extends GapLeavingProbe {
+        @SuppressWarnings("unused")
+        private int value;
+    }
+}
@@ -0,0 +1,315 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+
+/**
+ * The layout of objects on the heap of a JVM: header sizes, reference size, alignment, ...
+ * <p>
+ * On HotSpot based JVMs, this is derived from the VM flags actually in effect ({@code UseCompressedClassPointers},
+ * {@code ObjectAlignmentInBytes}, {@code UseCompactObjectHeaders}) and the Java version, rather than from the
+ * {@link JvmInformation} constant alone. JVMs that can't be identified with confidence get their layout measured, see
+ * {@link LayoutCalibration}. Other JVMs use the values of their {@link JvmInformation} constant.
+ */
+public final class ObjectLayout {
+
+    /**
+     * The ObjectLayout of the current JVM
+     */
+    public static final ObjectLayout CURRENT_LAYOUT;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObjectLayout.class);
+
+    private static final Set<JvmInformation> HOTSPOT_BASED = EnumSet.of(
+        JvmInformation.HOTSPOT_32_BIT, JvmInformation.HOTSPOT_32_BIT_WITH_CONCURRENT_MARK_AND_SWEEP,
+        JvmInformation.HOTSPOT_64_BIT, JvmInformation.HOTSPOT_64_BIT_WITH_CONCURRENT_MARK_AND_SWEEP,
+        JvmInformation.HOTSPOT_64_BIT_WITH_COMPRESSED_OOPS,
+        JvmInformation.HOTSPOT_64_BIT_WITH_COMPRESSED_OOPS_AND_CONCURRENT_MARK_AND_SWEEP,
+        JvmInformation.OPENJDK_32_BIT, JvmInformation.OPENJDK_32_BIT_WITH_CONCURRENT_MARK_AND_SWEEP,
+        JvmInformation.OPENJDK_64_BIT, JvmInformation.OPENJDK_64_BIT_WITH_CONCURRENT_MARK_AND_SWEEP,
+        JvmInformation.OPENJDK_64_BIT_WITH_COMPRESSED_OOPS,
+        JvmInformation.OPENJDK_64_BIT_WITH_COMPRESSED_OOPS_AND_CONCURRENT_MARK_AND_SWEEP);
+
+    static {
+        CURRENT_LAYOUT = detect(JvmInformation.current());
+        LOGGER.info("Detected object layout of: " + CURRENT_LAYOUT.getJvmDescription());
+    }
+
+    private final JvmInformation jvmInformation;
+    private final String description;
+    private final int pointerSize;
+    private final int javaPointerSize;
+    private final int objectHeaderSize;
+    private final int arrayHeaderSize;
+    private final int objectAlignment;
+    private final int minimumObjectSize;
+    private final boolean compactFieldLayout;
+    private final int fieldOffsetAdjustment;
+    private final int agentSizeOfAdjustment;
+
+    ObjectLayout(JvmInformation jvmInformation, String description, int pointerSize, int javaPointerSize, int objectHeaderSize,
+                 int arrayHeaderSize, int objectAlignment, int minimumObjectSize, boolean compactFieldLayout,
+                 int fieldOffsetAdjustment, int agentSizeOfAdjustment) {
+        this.jvmInformation = jvmInformation;
+        this.description = description;
+        this.pointerSize = pointerSize;
+        this.javaPointerSize = javaPointerSize;
+        this.objectHeaderSize = objectHeaderSize;
+        this.arrayHeaderSize = arrayHeaderSize;
+        this.objectAlignment = objectAlignment;
+        this.minimumObjectSize = minimumObjectSize;
+        this.compactFieldLayout = compactFieldLayout;
+        this.fieldOffsetAdjustment = fieldOffsetAdjustment;
+        this.agentSizeOfAdjustment = agentSizeOfAdjustment;
+    }
+
+    /**
+     * The layout described by a {@link JvmInformation} constant, without looking at any VM flag
+     *
+     * @param jvmInformation the JVM
+     * @return the layout
+     */
+    public static ObjectLayout of(JvmInformation jvmInformation) {
+        return new ObjectLayout(jvmInformation, jvmInformation.getJvmDescription(), jvmInformation.getPointerSize(),
+            jvmInformation.getJavaPointerSize(), jvmInformation.getObjectHeaderSize(),
+            jvmInformation.getObjectHeaderSize() + PrimitiveType.INT.getSize(), jvmInformation.getObjectAlignment(),
+            jvmInformation.getMinimumObjectSize(), false, jvmInformation.getFieldOffsetAdjustment(),
+            jvmInformation.getAgentSizeOfAdjustment());
+    }
+
+    /**
+     * The layout of a HotSpot based JVM
+     *
+     * @param jvmInformation          the JVM, which accounts for its bitness, compressed oops and collector
+     * @param javaVersion             the feature version of the JVM (e.g. 8, 17, 25)
+     * @param compressedClassPointers whether {@code UseCompressedClassPointers} is in effect
+     * @param compactHeaders          whether {@code UseCompactObjectHeaders} is in effect
+     * @param objectAlignment         the value of {@code ObjectAlignmentInBytes}
+     * @return the layout
+     */
+    static ObjectLayout hotSpot(JvmInformation jvmInformation, int javaVersion, boolean compressedClassPointers,
+                                boolean compactHeaders, int objectAlignment) {
+        final int pointerSize = jvmInformation.getPointerSize();
+        final int objectHeaderSize;
+        if (pointerSize == 4) {
+            objectHeaderSize = 8;
+        } else if (compactHeaders) {
+            objectHeaderSize = 8;
+        } else {
+            // mark word and klass pointer
+            objectHeaderSize = pointerSize + (compressedClassPointers ? 4 : pointerSize);
+        }
+        int arrayHeaderSize = objectHeaderSize + PrimitiveType.INT.getSize();
+        if (javaVersion < 22) {
+            // array elements started on a heap word boundary up until JDK-8139457
+            arrayHeaderSize = align(arrayHeaderSize, pointerSize);
+        }
+
+        final StringBuilder description = new StringBuilder(jvmInformation.getJvmDescription());
+        if (compactHeaders) {
+            description.append(", compact object headers");
+        } else if (pointerSize == 8) {
+            description.append(compressedClassPointers ? ", compressed" : ", uncompressed").append(" class pointers");
+        }
+        description.append(", ").append(objectAlignment).append(" byte object alignment");
+
+        return new ObjectLayout(jvmInformation, description.toString(), pointerSize, jvmInformation.getJavaPointerSize(),
+            objectHeaderSize, arrayHeaderSize, objectAlignment, Math.max(jvmInformation.getMinimumObjectSize(), objectAlignment),
+            javaVersion >= 15, jvmInformation.getFieldOffsetAdjustment(), jvmInformation.getAgentSizeOfAdjustment());
+    }
+
+    private static ObjectLayout detect(JvmInformation jvmInformation) {
+        if (jvmInformation == JvmInformation.UNKNOWN_32_BIT || jvmInformation == JvmInformation.UNKNOWN_64_BIT) {
+            return calibrateOr(jvmInformation);
+        }
+        if (!HOTSPOT_BASED.contains(jvmInformation)) {
+            return of(jvmInformation);
+        }
+        final String compressedOops = JvmInformation.getHotSpotVmOptionValue("UseCompressedOops");
+        if (compressedOops == null) {
+            return calibrateOr(jvmInformation);
+        }
+        // before JDK 15, class pointers were only compressed along with oops
+        final String compressedClassPointers = JvmInformation.getHotSpotVmOptionValue("UseCompressedClassPointers");
+        final String compactHeaders = JvmInformation.getHotSpotVmOptionValue("UseCompactObjectHeaders");
+        int objectAlignment = jvmInformation.getObjectAlignment();
+        try {
+            final String value = JvmInformation.getHotSpotVmOptionValue("ObjectAlignmentInBytes");
+            if (value != null) {
+                objectAlignment = Integer.parseInt(value);
+            }
+        } catch (NumberFormatException e) {
+            LOGGER.debug("Unexpected ObjectAlignmentInBytes value, assuming {} bytes", objectAlignment, e);
+        }
+        return hotSpot(jvmInformation, javaVersion(),
+            Boolean.parseBoolean(compressedClassPointers == null ? compressedOops : compressedClassPointers),
+            Boolean.parseBoolean(compactHeaders), objectAlignment);
+    }
+
+    /**
+     * Measures the layout of a JVM that couldn't be identified with confidence, falling back to the values of its
+     * {@link JvmInformation} constant if it can't be measured either
+     */
+    private static ObjectLayout calibrateOr(JvmInformation jvmInformation) {
+        final ObjectLayout calibrated = LayoutCalibration.calibrate(jvmInformation, UnsafeSizeOf.UNSAFE,
+            AgentLoader.agentIsAvailable() ? AgentLoader::agentSizeOf : null);
+        return calibrated == null ? of(jvmInformation) : calibrated;
+    }
+
+    /**
+     * The feature version of the current JVM
+     */
+    static int javaVersion() {
+        String version = System.getProperty("java.specification.version", "1.8");
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+        final int dot = version.indexOf('.');
+        try {
+            return Integer.parseInt(dot < 0 ? version : version.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return 8;
+        }
+    }
+
+    private static int align(int size, int alignment) {
+        return (size + alignment - 1) / alignment * alignment;
+    }
+
+    /**
+     * The {@link JvmInformation} this layout was derived from
+     */
+    public JvmInformation getJvmInformation() {
+        return jvmInformation;
+    }
+
+    /**
+     * A human-readable description of the JVM and the relevant settings of its layout
+     */
+    public String getJvmDescription() {
+        return description;
+    }
+
+    /**
+     * Size of a pointer in bytes on this runtime
+     */
+    public int getPointerSize() {
+        return pointerSize;
+    }
+
+    /**
+     * Size of a java reference in bytes on this runtime (that differs when compressedOops are being used)
+     */
+    public int getJavaPointerSize() {
+        return javaPointerSize;
+    }
+
+    /**
+     * The size of an object header in bytes
+     */
+    public int getObjectHeaderSize() {
+        return objectHeaderSize;
+    }
+
+    /**
+     * The offset, in bytes, of the first element of an array of ints
+     */
+    public int getArrayHeaderSize() {
+        return arrayHeaderSize;
+    }
+
+    /**
+     * Object alignment / padding in bytes
+     */
+    public int getObjectAlignment() {
+        return objectAlignment;
+    }
+
+    /**
+     * Minimal size an object will occupy on the heap in bytes
+     */
+    public int getMinimumObjectSize() {
+        return minimumObjectSize;
+    }
+
+    /**
+     * Whether fields are laid out as done since JDK 15: sorted by size across the whole class hierarchy, and filling the
+     * gaps left in the header and in superclasses
+     */
+    public boolean hasCompactFieldLayout() {
+        return compactFieldLayout;
+    }
+
+    /**
+     * The size of the jvm-specific field offset adjustment in bytes
+     */
+    public int getFieldOffsetAdjustment() {
+        return fieldOffsetAdjustment;
+    }
+
+    /**
+     * The size of the jvm-specific agent result adjustment in bytes
+     */
+    public int getAgentSizeOfAdjustment() {
+        return agentSizeOfAdjustment;
+    }
+
+    /**
+     * Whether the jvm can support AgentSizeOf implementation
+     */
+    public boolean supportsAgentSizeOf() {
+        return jvmInformation.supportsAgentSizeOf();
+    }
+
+    /**
+     * Whether the jvm can support UnsafeSizeOf implementation
+     */
+    public boolean supportsUnsafeSizeOf() {
+        return jvmInformation.supportsUnsafeSizeOf();
+    }
+
+    /**
+     * Whether the jvm can support ReflectionSizeOf implementation
+     */
+    public boolean supportsReflectionSizeOf() {
+        return jvmInformation.supportsReflectionSizeOf();
+    }
+
+    /**
+     * Pads a size to the object alignment, and to the minimum object size
+     *
+     * @param size the unpadded size of an object
+     * @return the size the object occupies on the heap
+     */
+    public long align(long size) {
+        if ((size % objectAlignment) != 0) {
+            size += objectAlignment - (size % objectAlignment);
+        }
+        return Math.max(minimumObjectSize, size);
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -16,7 +16,7 @@
  */
 package org.ehcache.sizeof.impl;
 
-import static org.ehcache.sizeof.impl.JvmInformation.CURRENT_JVM_INFORMATION;
+import static org.ehcache.sizeof.impl.ObjectLayout.CURRENT_LAYOUT;
 
 /**
  * Primitive types in the VM type system and their sizes
@@ -91,7 +91,7 @@ enum PrimitiveType {
      * @return size in bytes
      */
     public static int getReferenceSize() {
-        return CURRENT_JVM_INFORMATION.getJavaPointerSize();
+        return CURRENT_LAYOUT.getJavaPointerSize();
     }
 
     /**
@@ -100,7 +100,7 @@ enum PrimitiveType {
      * @return size in bytes
      */
     public static long getArraySize() {
-        return CURRENT_JVM_INFORMATION.getObjectHeaderSize() + INT.getSize();
+        return CURRENT_LAYOUT.getArrayHeaderSize();
     }
 
     /**
@@ -27,7 +27,7 @@ import java.lang.reflect.Modifier;
 import java.util.ArrayDeque;
 import java.util.Deque;
 
-import static org.ehcache.sizeof.impl.JvmInformation.CURRENT_JVM_INFORMATION;
+import static org.ehcache.sizeof.impl.ObjectLayout.CURRENT_LAYOUT;
 
 /**
  * SizeOf that uses reflection to measure on heap size of object graphs
@@ -73,8 +73,8 @@ public class ReflectionSizeOf extends SizeOf {
     public ReflectionSizeOf(SizeOfFilter fieldFilter, boolean caching, boolean bypassFlyweight) {
         super(fieldFilter, caching, bypassFlyweight);
 
-        if (!CURRENT_JVM_INFORMATION.supportsReflectionSizeOf()) {
-            LOGGER.warn("ReflectionSizeOf is not always accurate on the JVM (" + CURRENT_JVM_INFORMATION.getJvmDescription() +
+        if (!CURRENT_LAYOUT.supportsReflectionSizeOf()) {
+            LOGGER.warn("ReflectionSizeOf is not always accurate on the JVM (" + CURRENT_LAYOUT.getJvmDescription() +
                         ").  Please consider enabling AgentSizeOf.");
         }
     }
@@ -92,7 +92,19 @@ public class ReflectionSizeOf extends SizeOf {
         if (aClass.isArray()) {
             return guessArraySize(obj);
         } else {
-            long size = CURRENT_JVM_INFORMATION.getObjectHeaderSize();
+            return instanceSizeOf(aClass);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long instanceSizeOf(Class<?> aClass) {
+        if (CURRENT_LAYOUT.hasCompactFieldLayout()) {
+            return CURRENT_LAYOUT.align(guessCompactLayoutSize(aClass));
+        } else {
+            long size = CURRENT_LAYOUT.getObjectHeaderSize();
 
             Deque<Class<?>> classStack = new ArrayDeque<>();
             for (Class<?> klazz = aClass; klazz != null; klazz = klazz.getSuperclass()) {
@@ -174,10 +186,36 @@ public class ReflectionSizeOf extends SizeOf {
                     size += PrimitiveType.getReferenceSize() - (size % PrimitiveType.getReferenceSize());
                 }
             }
-            if ((size % CURRENT_JVM_INFORMATION.getObjectAlignment()) != 0) {
-                size += CURRENT_JVM_INFORMATION.getObjectAlignment() - (size % CURRENT_JVM_INFORMATION.getObjectAlignment());
+            return CURRENT_LAYOUT.align(size);
+        }
+    }
+
+    /**
+     * Since JDK 15, the fields of the whole class hierarchy are laid out largest first, smaller ones filling the gap an
+     * object header leaves before the first 8 bytes aligned offset, as well as those left in superclasses
+     */
+    private static long guessCompactLayoutSize(Class<?> aClass) {
+        long large = 0;
+        long small = 0;
+        for (Class<?> klazz = aClass; klazz != null; klazz = klazz.getSuperclass()) {
+            for (Field f : klazz.getDeclaredFields()) {
+                if (Modifier.isStatic(f.getModifiers())) {
+                    continue;
+                }
+                int fieldSize = f.getType().isPrimitive() ? PrimitiveType.forType(f.getType()).getSize() : PrimitiveType.getReferenceSize();
+                if (fieldSize >= PrimitiveType.LONG.getSize()) {
+                    large += fieldSize;
+                } else {
+                    small += fieldSize;
+                }
             }
-            return Math.max(size, CURRENT_JVM_INFORMATION.getMinimumObjectSize());
+        }
+        long size = CURRENT_LAYOUT.getObjectHeaderSize();
+        long gap = (size % PrimitiveType.LONG.getSize()) == 0 ? 0 : PrimitiveType.LONG.getSize() - (size % PrimitiveType.LONG.getSize());
+        if (large > 0) {
+            return size + large + Math.max(small, gap);
+        } else {
+            return size + small;
         }
     }
 
@@ -192,9 +230,6 @@ public class ReflectionSizeOf extends SizeOf {
                 size += length * PrimitiveType.getReferenceSize();
             }
         }
-        if ((size % CURRENT_JVM_INFORMATION.getObjectAlignment()) != 0) {
-            size += CURRENT_JVM_INFORMATION.getObjectAlignment() - (size % CURRENT_JVM_INFORMATION.getObjectAlignment());
-        }
-        return Math.max(size, CURRENT_JVM_INFORMATION.getMinimumObjectSize());
+        return CURRENT_LAYOUT.align(size);
     }
 }
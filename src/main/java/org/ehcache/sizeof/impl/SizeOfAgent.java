@@ -16,9 +16,34 @@
  */
 package org.ehcache.sizeof.impl;
 
+import java.io.IOException;
+import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.Instrumentation;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
+ * The agent accepts comma separated options:
+ * <ul>
+ *   <li>{@code warmUp=com.acme.model;com.acme.dto}: the packages (and their subpackages) or classes whose instances get
+ *   sized, for the sizing metadata of the ones loaded already, and of the ones loaded later, to be computed ahead of time,
+ *   off the threads sizing</li>
+ *   <li>{@code warmUpFile=/path/to/file}: a file listing more such packages or classes, one per line</li>
+ * </ul>
+ *
  * @author Alex Snaps
  */
 public class SizeOfAgent {
@@ -26,14 +51,24 @@ public class SizeOfAgent {
     private static volatile Instrumentation instrumentation;
     private static final String NO_INSTRUMENTATION_SYSTEM_PROPERTY_NAME = "org.ehcache.sizeof.agent.instrumentationSystemProperty";
 
+    private static final List<Consumer<Class<?>>> WARM_UP_LISTENERS = new CopyOnWriteArrayList<>();
+    private static final BlockingQueue<Object> WARM_UP_QUEUE = new LinkedBlockingQueue<>();
+    private static final List<String> WARNINGS = new CopyOnWriteArrayList<>();
+    private static final long WARM_UP_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int WARM_UP_MAX_ATTEMPTS = 8;
+    private static volatile String[] warmUpPrefixes = new String[0];
+    private static Thread warmUpThread;
+
     public static void premain(String options, Instrumentation inst) {
         SizeOfAgent.instrumentation = inst;
         registerSystemProperty();
+        configureWarmUp(options);
     }
 
     public static void agentmain(String options, Instrumentation inst) {
         SizeOfAgent.instrumentation = inst;
         registerSystemProperty();
+        configureWarmUp(options);
     }
 
     private static void registerSystemProperty() {
@@ -42,6 +77,185 @@ public class SizeOfAgent {
         }
     }
 
+    private static synchronized void configureWarmUp(String options) {
+        if (options == null || warmUpPrefixes.length > 0) {
+            return;
+        }
+        final List<String> prefixes = new ArrayList<>();
+        for (String option : options.split(",")) {
+            final int separator = option.indexOf('=');
+            final String key = separator < 0 ? option.trim() : option.substring(0, separator).trim();
+            final String value = separator < 0 ? "" : option.substring(separator + 1).trim();
+            if (key.equals("warmUp")) {
+                for (String prefix : value.split(";")) {
+                    addWarmUpPrefix(prefixes, prefix);
+                }
+            } else if (key.equals("warmUpFile")) {
+                try {
+                    for (String line : Files.readAllLines(Paths.get(value), StandardCharsets.UTF_8)) {
+                        if (!line.trim().startsWith("#")) {
+                            addWarmUpPrefix(prefixes, line);
+                        }
+                    }
+                } catch (IOException e) {
+                    WARNINGS.add("Couldn't read the warm up file " + value + ": " + e);
+                }
+            } else if (!key.isEmpty()) {
+                WARNINGS.add("Ignoring the unknown agent option " + key);
+            }
+        }
+        if (!prefixes.isEmpty()) {
+            warmUpPrefixes = prefixes.toArray(new String[prefixes.size()]);
+        }
+    }
+
+    private static void addWarmUpPrefix(List<String> prefixes, String prefix) {
+        if (!prefix.trim().isEmpty()) {
+            prefixes.add(prefix.trim());
+        }
+    }
+
+    private static boolean isWarmedUp(String className) {
+        for (String prefix : warmUpPrefixes) {
+            if (className.startsWith(prefix)
+                && (className.length() == prefix.length() || className.charAt(prefix.length()) == '.'
+                    || className.charAt(prefix.length()) == '$')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The problems met configuring the agent, for the loader to log them: the agent itself can't rely on the logging
+     * framework being on the system class path. Each is only returned once.
+     *
+     * @return the problems met since last called
+     */
+    public static List<String> drainWarnings() {
+        final List<String> warnings = new ArrayList<>(WARNINGS);
+        WARNINGS.removeAll(warnings);
+        return warnings;
+    }
+
+    /**
+     * Hands the classes to warm up over to a listener: the ones loaded already first, then the ones loaded from then on,
+     * all from a single daemon thread. Loads only get recorded once the first listener is added, so that nothing queues
+     * up for as long as no one listens.
+     *
+     * @param listener the listener
+     */
+    public static void addWarmUpListener(Consumer<Class<?>> listener) {
+        if (warmUpPrefixes.length == 0) {
+            return;
+        }
+        synchronized (WARM_UP_LISTENERS) {
+            WARM_UP_LISTENERS.add(listener);
+            if (warmUpThread == null) {
+                // before listing the loaded classes, for no class loaded concurrently to be missed
+                instrumentation.addTransformer(new WarmUpTransformer());
+                warmUpThread = new Thread(SizeOfAgent::warmUp, "ehcache-sizeof-agent-warm-up");
+                warmUpThread.setDaemon(true);
+                warmUpThread.start();
+            }
+        }
+        WARM_UP_QUEUE.add(listener);
+    }
+
+    /**
+     * Classes handed over by the transformer are being loaded, and can't be resolved by name without the risk of loading
+     * them concurrently to their loader: they are rather looked up amongst the ones their loader defined, in batches, once
+     * likely defined. Each lookup lists all the classes of a loader, so the ones not defined yet are looked up again less
+     * and less often.
+     */
+    @SuppressWarnings("unchecked")
+    private static void warmUp() {
+        List<LoadedClass> undefined = new ArrayList<>();
+        while (true) {
+            final List<Object> batch = new ArrayList<>();
+            try {
+                final Object next;
+                if (undefined.isEmpty()) {
+                    next = WARM_UP_QUEUE.take();
+                } else {
+                    long due = Long.MAX_VALUE;
+                    for (LoadedClass loadedClass : undefined) {
+                        due = Math.min(due, loadedClass.due - System.nanoTime());
+                    }
+                    next = WARM_UP_QUEUE.poll(due, TimeUnit.NANOSECONDS);
+                }
+                if (next != null) {
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            WARM_UP_QUEUE.drainTo(batch);
+            final long now = System.nanoTime();
+            final Map<ClassLoaderKey, List<LoadedClass>> loaded = new HashMap<>();
+            final List<LoadedClass> notDue = new ArrayList<>();
+            for (LoadedClass loadedClass : undefined) {
+                if (loadedClass.due - now <= 0) {
+                    loaded.computeIfAbsent(loadedClass.loader, k -> new ArrayList<>()).add(loadedClass);
+                } else {
+                    notDue.add(loadedClass);
+                }
+            }
+            for (Object next : batch) {
+                if (next instanceof LoadedClass) {
+                    // still being defined when queued: looked up once the first retry delay elapsed
+                    ((LoadedClass)next).due = now + WARM_UP_RETRY_NANOS;
+                    notDue.add((LoadedClass)next);
+                } else {
+                    for (Class<?> type : instrumentation.getAllLoadedClasses()) {
+                        if (isWarmedUp(type.getName())) {
+                            notify((Consumer<Class<?>>)next, type);
+                        }
+                    }
+                }
+            }
+            undefined = notDue;
+            for (Map.Entry<ClassLoaderKey, List<LoadedClass>> entry : loaded.entrySet()) {
+                undefined.addAll(warmUpDefined(entry.getKey(), entry.getValue()));
+            }
+        }
+    }
+
+    private static List<LoadedClass> warmUpDefined(ClassLoaderKey loader, List<LoadedClass> loadedClasses) {
+        final ClassLoader classLoader = loader.get();
+        if (classLoader == null && !loader.bootstrap) {
+            return Collections.emptyList();
+        }
+        final Map<String, LoadedClass> byName = new HashMap<>();
+        for (LoadedClass loadedClass : loadedClasses) {
+            byName.put(loadedClass.name, loadedClass);
+        }
+        for (Class<?> type : instrumentation.getInitiatedClasses(classLoader)) {
+            if (type.getClassLoader() == classLoader && byName.remove(type.getName()) != null) {
+                for (Consumer<Class<?>> listener : WARM_UP_LISTENERS) {
+                    notify(listener, type);
+                }
+            }
+        }
+        final List<LoadedClass> undefined = new ArrayList<>();
+        final long now = System.nanoTime();
+        for (LoadedClass loadedClass : byName.values()) {
+            if (++loadedClass.attempts < WARM_UP_MAX_ATTEMPTS) {
+                loadedClass.due = now + (WARM_UP_RETRY_NANOS << loadedClass.attempts);
+                undefined.add(loadedClass);
+            }
+        }
+        return undefined;
+    }
+
+    private static void notify(Consumer<Class<?>> listener, Class<?> type) {
+        try {
+            listener.accept(type);
+        } catch (Throwable t) {
+            // warming up is best effort
+        }
+    }
+
     public static Instrumentation getInstrumentation() {
         return instrumentation;
     }
@@ -49,4 +263,70 @@ public class SizeOfAgent {
     private SizeOfAgent() {
         //not instantiable
     }
+
+    /**
+     * Queues the classes to warm up as they get loaded
+     */
+    private static final class WarmUpTransformer implements ClassFileTransformer {
+
+        @Override
+        public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                                ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+            if (className != null && classBeingRedefined == null) {
+                final String name = className.replace('/', '.');
+                if (isWarmedUp(name)) {
+                    WARM_UP_QUEUE.add(new LoadedClass(name, new ClassLoaderKey(loader)));
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A class being loaded
+     */
+    private static final class LoadedClass {
+
+        private final String name;
+        private final ClassLoaderKey loader;
+        private int attempts;
+        private long due;
+
+        LoadedClass(String name, ClassLoaderKey loader) {
+            this.name = name;
+            this.loader = loader;
+        }
+    }
+
+    /**
+     * Weakly references a class loader, compared by identity
+     */
+    private static final class ClassLoaderKey extends WeakReference<ClassLoader> {
+
+        private final boolean bootstrap;
+        private final int hashCode;
+
+        ClassLoaderKey(ClassLoader loader) {
+            super(loader);
+            this.bootstrap = loader == null;
+            this.hashCode = System.identityHashCode(loader);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof ClassLoaderKey)) {
+                return false;
+            }
+            final ClassLoaderKey other = (ClassLoaderKey)obj;
+            return bootstrap == other.bootstrap && get() == other.get() && (bootstrap || get() != null);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
 }
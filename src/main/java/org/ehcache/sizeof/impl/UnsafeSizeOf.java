@@ -26,7 +26,7 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 
-import static org.ehcache.sizeof.impl.JvmInformation.CURRENT_JVM_INFORMATION;
+import static org.ehcache.sizeof.impl.ObjectLayout.CURRENT_LAYOUT;
 
 /**
  * {@link sun.misc.Unsafe#theUnsafe} based sizeOf measurement
@@ -40,7 +40,7 @@ public class UnsafeSizeOf extends SizeOf {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(UnsafeSizeOf.class);
 
-    private static final Unsafe UNSAFE;
+    static final Unsafe UNSAFE;
 
     static {
         Unsafe unsafe;
@@ -91,8 +91,8 @@ public class UnsafeSizeOf extends SizeOf {
             throw new UnsupportedOperationException("sun.misc.Unsafe instance not accessible");
         }
 
-        if (!CURRENT_JVM_INFORMATION.supportsUnsafeSizeOf()) {
-            LOGGER.warn("UnsafeSizeOf is not always accurate on the JVM (" + CURRENT_JVM_INFORMATION.getJvmDescription() +
+        if (!CURRENT_LAYOUT.supportsUnsafeSizeOf()) {
+            LOGGER.warn("UnsafeSizeOf is not always accurate on the JVM (" + CURRENT_LAYOUT.getJvmDescription() +
                         ").  Please consider enabling AgentSizeOf.");
         }
 
@@ -108,36 +108,34 @@ public class UnsafeSizeOf extends SizeOf {
             int base = UNSAFE.arrayBaseOffset(klazz);
             int scale = UNSAFE.arrayIndexScale(klazz);
             long size = base + (scale * Array.getLength(obj));
-            size += CURRENT_JVM_INFORMATION.getFieldOffsetAdjustment();
-            if ((size % CURRENT_JVM_INFORMATION.getObjectAlignment()) != 0) {
-                size += CURRENT_JVM_INFORMATION.getObjectAlignment() - (size % CURRENT_JVM_INFORMATION.getObjectAlignment());
-            }
-            return Math.max(CURRENT_JVM_INFORMATION.getMinimumObjectSize(), size);
+            size += CURRENT_LAYOUT.getFieldOffsetAdjustment();
+            return CURRENT_LAYOUT.align(size);
         } else {
-            for (Class<?> klazz = obj.getClass(); klazz != null; klazz = klazz.getSuperclass()) {
-                long lastFieldOffset = -1;
-                for (Field f : klazz.getDeclaredFields()) {
-                    if (!Modifier.isStatic(f.getModifiers())) {
-                        lastFieldOffset = Math.max(lastFieldOffset, UNSAFE.objectFieldOffset(f));
-                    }
-                }
-                if (lastFieldOffset > 0) {
-                    lastFieldOffset += CURRENT_JVM_INFORMATION.getFieldOffsetAdjustment();
-                    lastFieldOffset += 1;
-                    if ((lastFieldOffset % CURRENT_JVM_INFORMATION.getObjectAlignment()) != 0) {
-                        lastFieldOffset += CURRENT_JVM_INFORMATION.getObjectAlignment() -
-                                           (lastFieldOffset % CURRENT_JVM_INFORMATION.getObjectAlignment());
-                    }
-                    return Math.max(CURRENT_JVM_INFORMATION.getMinimumObjectSize(), lastFieldOffset);
-                }
-            }
+            return instanceSizeOf(obj.getClass());
+        }
+    }
 
-            long size = CURRENT_JVM_INFORMATION.getObjectHeaderSize();
-            if ((size % CURRENT_JVM_INFORMATION.getObjectAlignment()) != 0) {
-                size += CURRENT_JVM_INFORMATION.getObjectAlignment() - (size % CURRENT_JVM_INFORMATION.getObjectAlignment());
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long instanceSizeOf(Class<?> type) {
+        // since JDK 15, fields of a subclass can fill gaps left in its superclasses
+        long lastFieldOffset = -1;
+        for (Class<?> klazz = type; klazz != null; klazz = klazz.getSuperclass()) {
+            for (Field f : klazz.getDeclaredFields()) {
+                if (!Modifier.isStatic(f.getModifiers())) {
+                    lastFieldOffset = Math.max(lastFieldOffset, UNSAFE.objectFieldOffset(f));
+                }
             }
-            return Math.max(CURRENT_JVM_INFORMATION.getMinimumObjectSize(), size);
         }
+        if (lastFieldOffset > 0) {
+            lastFieldOffset += CURRENT_LAYOUT.getFieldOffsetAdjustment();
+            lastFieldOffset += 1;
+            return CURRENT_LAYOUT.align(lastFieldOffset);
+        }
+
+        return CURRENT_LAYOUT.align(CURRENT_LAYOUT.getObjectHeaderSize());
     }
 
 }
@@ -23,6 +23,10 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 
 /**
  * A poor man's implementation of a WeakIdentityConcurrentMap to hold the CacheManager associated ExecutorServices
@@ -33,8 +37,13 @@ import java.util.concurrent.ConcurrentMap;
  */
 public final class WeakIdentityConcurrentMap<K, V> {
 
-    private final ConcurrentMap<WeakReference<K>, V> map = new ConcurrentHashMap<>();
+    // about one read in that many cleans up collected keys, unless another thread already is
+    private static final int READS_PER_CLEAN_UP = 1024;
+
+    // keys are IdentityWeakReferences, looked up using IdentityKeys
+    private final ConcurrentMap<Object, V> map = new ConcurrentHashMap<>();
     private final ReferenceQueue<K> queue = new ReferenceQueue<>();
+    private final Lock cleanUpLock = new ReentrantLock();
 
     private final CleanUpTask<V> cleanUpTask;
 
@@ -79,7 +88,7 @@ public final class WeakIdentityConcurrentMap<K, V> {
      */
     public V remove(K key) {
         cleanUp();
-        return map.remove(new IdentityWeakReference<>(key, queue));
+        return map.remove(new IdentityKey(key));
     }
 
     /**
@@ -108,13 +117,16 @@ public final class WeakIdentityConcurrentMap<K, V> {
     }
 
     /**
+     * Looks the key up, without allocating any {@link Reference}, and only occasionally cleaning up collected keys, so
+     * that concurrent reads don't contend
+     *
      * @param key the key whose associated value is to be returned
      * @return the value to which the specified key is mapped, or
      *         {@code null} if this map contains no mapping for the key
      */
     public V get(K key) {
-        cleanUp();
-        return map.get(new IdentityWeakReference<>(key));
+        maybeCleanUp();
+        return map.get(new IdentityKey(key));
     }
 
     /**
@@ -134,12 +146,13 @@ public final class WeakIdentityConcurrentMap<K, V> {
     /**
      * @return a set view of the keys contained in this map
      */
+    @SuppressWarnings("unchecked")
     public Set<K> keySet() {
         cleanUp();
         K k;
         final HashSet<K> ks = new HashSet<>();
-        for (WeakReference<K> weakReference : map.keySet()) {
-            k = weakReference.get();
+        for (Object weakReference : map.keySet()) {
+            k = ((IdentityWeakReference<K>)weakReference).get();
             if (k != null) {
                 ks.add(k);
             }
@@ -147,25 +160,53 @@ public final class WeakIdentityConcurrentMap<K, V> {
         return ks;
     }
 
+    /**
+     * Checks whether any of the keys matches, without copying them as {@link #keySet()} does
+     *
+     * @param predicate the predicate keys are tested against
+     * @return true if a key matches
+     */
+    @SuppressWarnings("unchecked")
+    public boolean anyKeyMatches(final Predicate<? super K> predicate) {
+        maybeCleanUp();
+        for (Object weakReference : map.keySet()) {
+            final K k = ((IdentityWeakReference<K>)weakReference).get();
+            if (k != null && predicate.test(k)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the key is mapped, without allocating any {@link Reference}, and only occasionally cleaning up
+     * collected keys
+     *
+     * @param key the key
+     * @return true if mapped
+     */
     public boolean containsKey(final K key) {
-        cleanUp();
-        return map.containsKey(new IdentityWeakReference<>(key));
+        maybeCleanUp();
+        return map.containsKey(new IdentityKey(key));
+    }
+
+    private void maybeCleanUp() {
+        if (ThreadLocalRandom.current().nextInt(READS_PER_CLEAN_UP) == 0 && cleanUpLock.tryLock()) {
+            try {
+                cleanUp();
+            } finally {
+                cleanUpLock.unlock();
+            }
+        }
     }
 
     /**
      * @param <T>
      */
-    private static final class IdentityWeakReference<T> extends WeakReference<T> {
+    private static final class IdentityWeakReference<T> extends WeakReference<T> implements IdentityLookup {
 
         private final int hashCode;
 
-        /**
-         * @param reference the referenced object
-         */
-        IdentityWeakReference(T reference) {
-            this(reference, null);
-        }
-
         /**
          * @param reference the references object
          * @param referenceQueue the reference queue where references are kept
@@ -191,18 +232,69 @@ public final class WeakIdentityConcurrentMap<K, V> {
             if (this == o) {
                 return true;
             }
-            if (!(o instanceof IdentityWeakReference<?>)) {
+            if (!(o instanceof IdentityLookup)) {
                 return false;
             } else {
-                IdentityWeakReference<?> wr = (IdentityWeakReference<?>)o;
+                IdentityLookup wr = (IdentityLookup)o;
                 Object got = get();
-                return (got != null && got == wr.get());
+                return (got != null && got == wr.referent());
             }
         }
 
         /**
          * {@inheritDoc}
          */
+        @Override
+        public Object referent() {
+            return get();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * A key of the map, or a key being looked up, compared by the identity of the object it refers to
+     */
+    private interface IdentityLookup {
+
+        /**
+         * @return the object referred to, or null if collected
+         */
+        Object referent();
+    }
+
+    /**
+     * Strongly references a key being looked up, equal to the {@link IdentityWeakReference} to the same object
+     */
+    private static final class IdentityKey implements IdentityLookup {
+
+        private final Object key;
+        private final int hashCode;
+
+        IdentityKey(Object key) {
+            this.key = key;
+            this.hashCode = (key == null) ? 0 : System.identityHashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            return o instanceof IdentityLookup && key != null && key == ((IdentityLookup)o).referent();
+        }
+
+        @Override
+        public Object referent() {
+            return key;
+        }
+
         @Override
         public int hashCode() {
             return hashCode;
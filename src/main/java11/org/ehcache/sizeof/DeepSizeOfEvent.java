@@ -0,0 +1,60 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A deep sizing call, recorded when it lasts longer than the threshold of the event, 1 ms unless configured otherwise in the
+ * recording settings, e.g. {@code org.ehcache.sizeof.DeepSizeOf#threshold=0 ms}
+ */
+@Name(DeepSizeOfEvent.NAME)
+@Label("Deep SizeOf")
+@Category({ "Ehcache", "SizeOf" })
+@Description("Measures the size of object graphs")
+@Threshold("1 ms")
+final class DeepSizeOfEvent extends Event {
+
+    static final String NAME = "org.ehcache.sizeof.DeepSizeOf";
+
+    @Label("Root Class")
+    @Description("Class of the first root sized")
+    Class<?> rootClass;
+
+    @Label("Roots")
+    int roots;
+
+    @Label("Objects Visited")
+    long objects;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Truncated")
+    @Description("Whether a tree mode walk exceeded its object limit, and the graphs got walked again tracking visited objects")
+    boolean truncated;
+
+    @Label("Engine")
+    String engine;
+}
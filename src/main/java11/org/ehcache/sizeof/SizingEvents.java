@@ -0,0 +1,67 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+/**
+ * Emits a JDK Flight Recorder event per deep sizing call.
+ * This is the Java 11 implementation, emitting a {@link DeepSizeOfEvent} for calls lasting longer than its threshold,
+ * while a recording enables it. Otherwise, calls only pay for checking whether the event is enabled.
+ */
+final class SizingEvents {
+
+    private SizingEvents() {
+        // not instantiable
+    }
+
+    /**
+     * Starts timing a sizing call, if its event is to be recorded
+     *
+     * @return the started event, or null if none is to be recorded
+     */
+    static Object begin() {
+        final DeepSizeOfEvent event = new DeepSizeOfEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends a sizing call, recording its event if it lasted long enough
+     *
+     * @param event     the event returned by {@link #begin()}
+     * @param roots     the roots of the graphs sized
+     * @param objects   the amount of objects visited
+     * @param bytes     the size measured
+     * @param truncated whether a walk got cut short, and the graphs walked again
+     * @param engine    the name of the engine measuring
+     */
+    static void commit(Object event, Object[] roots, long objects, long bytes, boolean truncated, String engine) {
+        final DeepSizeOfEvent deepSizeOf = (DeepSizeOfEvent)event;
+        deepSizeOf.end();
+        if (deepSizeOf.shouldCommit()) {
+            deepSizeOf.rootClass = roots != null && roots.length > 0 && roots[0] != null ? roots[0].getClass() : null;
+            deepSizeOf.roots = roots != null ? roots.length : 0;
+            deepSizeOf.objects = objects;
+            deepSizeOf.bytes = bytes;
+            deepSizeOf.truncated = truncated;
+            deepSizeOf.engine = engine;
+            deepSizeOf.commit();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ChunkedWorkStackTest {
+
+    private static final int COUNT = ChunkedWorkStack.CHUNK_SIZE * 3 + 7;
+
+    @Test
+    public void testPopsDepthFirst() {
+        ChunkedWorkStack stack = new ChunkedWorkStack(false);
+        assertThat(stack.isEmpty(), is(true));
+        for (int i = 0; i < COUNT; i++) {
+            stack.push(i);
+        }
+        for (int i = COUNT - 1; i >= 0; i--) {
+            assertThat(stack.isEmpty(), is(false));
+            assertThat(stack.pop(), is((Object)i));
+        }
+        assertThat(stack.isEmpty(), is(true));
+        stack.release();
+    }
+
+    @Test
+    public void testPopsBreadthFirst() {
+        ChunkedWorkStack stack = new ChunkedWorkStack(true);
+        assertThat(stack.isEmpty(), is(true));
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < COUNT; i++) {
+                stack.push(i);
+            }
+            for (int i = 0; i < COUNT; i++) {
+                assertThat(stack.isEmpty(), is(false));
+                assertThat(stack.pop(), is((Object)i));
+            }
+            assertThat(stack.isEmpty(), is(true));
+        }
+        stack.release();
+    }
+
+    @Test
+    public void testInterleavesPushesAndPops() {
+        ChunkedWorkStack stack = new ChunkedWorkStack(false);
+        for (int i = 0; i < ChunkedWorkStack.CHUNK_SIZE; i++) {
+            stack.push(i);
+        }
+        stack.push("top");
+        assertThat(stack.pop(), is((Object)"top"));
+        stack.push("again");
+        assertThat(stack.pop(), is((Object)"again"));
+        assertThat(stack.pop(), is((Object)(ChunkedWorkStack.CHUNK_SIZE - 1)));
+    }
+
+    @Test
+    public void testReusesTheSlotsOfOneChunkPerThread() {
+        ChunkedWorkStack stack = new ChunkedWorkStack(false);
+        for (int i = 0; i < COUNT; i++) {
+            stack.push(i);
+        }
+        while (!stack.isEmpty()) {
+            stack.pop();
+        }
+        stack.release();
+
+        // a walk nested in another one gets slots of its own
+        ChunkedWorkStack next = new ChunkedWorkStack(false);
+        ChunkedWorkStack nested = new ChunkedWorkStack(false);
+        next.push("next");
+        nested.push("nested");
+        assertThat(nested.pop(), is((Object)"nested"));
+        assertThat(next.pop(), is((Object)"next"));
+        nested.release();
+        next.release();
+    }
+
+    @Test
+    public void testEmptiesTheChunkReleasedByAnInterruptedWalk() {
+        ChunkedWorkStack stack = new ChunkedWorkStack(false);
+        for (int i = 0; i < COUNT; i++) {
+            stack.push(i);
+        }
+        stack.release();
+
+        ChunkedWorkStack next = new ChunkedWorkStack(false);
+        assertThat(next.isEmpty(), is(true));
+        next.push("next");
+        assertThat(next.pop(), is((Object)"next"));
+        assertThat(next.isEmpty(), is(true));
+        next.release();
+    }
+
+    @Test
+    public void testThrowsWhenEmpty() {
+        ChunkedWorkStack stack = new ChunkedWorkStack(false);
+        try {
+            stack.pop();
+            fail();
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ClassLayoutStoreTest {
+
+    private static final String ENGINE = "engine";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPersistsShallowSizes() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("layouts");
+        ClassLayoutStore store = new ClassLayoutStore(path, 42L);
+        assertThat(store.shallowSize(ENGINE, String.class), nullValue());
+        store.record(ENGINE, String.class, 24L);
+        store.record(ENGINE, ClassLayoutStoreTest.class, 16L);
+        assertThat(store.shallowSize(ENGINE, String.class), is(24L));
+        store.persist();
+
+        ClassLayoutStore restarted = new ClassLayoutStore(path, 42L);
+        assertThat(restarted.shallowSize(ENGINE, String.class), is(24L));
+        assertThat(restarted.shallowSize(ENGINE, ClassLayoutStoreTest.class), is(16L));
+        assertThat(restarted.shallowSize("other", String.class), nullValue());
+
+        restarted.record(ENGINE, Integer.class, 16L);
+        restarted.persist();
+        ClassLayoutStore again = new ClassLayoutStore(path, 42L);
+        assertThat(again.shallowSize(ENGINE, String.class), is(24L));
+        assertThat(again.shallowSize(ENGINE, Integer.class), is(16L));
+    }
+
+    @Test
+    public void testIgnoresStoresOfOtherLayouts() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("layouts");
+        ClassLayoutStore store = new ClassLayoutStore(path, 42L);
+        store.record(ENGINE, String.class, 24L);
+        store.persist();
+
+        assertThat(new ClassLayoutStore(path, 43L).shallowSize(ENGINE, String.class), nullValue());
+    }
+
+    @Test
+    public void testIgnoresCorruptStores() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("layouts");
+        Files.write(path, new byte[] { 1, 2, 3 });
+
+        ClassLayoutStore store = new ClassLayoutStore(path, 42L);
+        assertThat(store.shallowSize(ENGINE, String.class), nullValue());
+        store.record(ENGINE, String.class, 24L);
+        store.persist();
+        assertThat(new ClassLayoutStore(path, 42L).shallowSize(ENGINE, String.class), is(24L));
+    }
+
+    @Test
+    public void testLooksEntriesUpInTheMappedFile() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("layouts");
+        ClassLayoutStore store = new ClassLayoutStore(path, 42L);
+        for (int i = 0; i < 1000; i++) {
+            store.record(ENGINE + i, String.class, i);
+        }
+        store.persist();
+
+        ClassLayoutStore restarted = new ClassLayoutStore(path, 42L);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(restarted.shallowSize(ENGINE + i, String.class), is((long)i));
+        }
+        assertThat(restarted.shallowSize(ENGINE + 1000, String.class), nullValue());
+    }
+
+    @Test
+    public void testIgnoresTruncatedStores() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("layouts");
+        ClassLayoutStore store = new ClassLayoutStore(path, 42L);
+        for (int i = 0; i < 100; i++) {
+            store.record(ENGINE + i, String.class, i);
+        }
+        store.persist();
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 100));
+
+        ClassLayoutStore truncated = new ClassLayoutStore(path, 42L);
+        int found = 0;
+        for (int i = 0; i < 100; i++) {
+            if (truncated.shallowSize(ENGINE + i, String.class) != null) {
+                found++;
+            }
+        }
+        assertThat(found > 0 && found < 100, is(true));
+        truncated.record(ENGINE, Integer.class, 16L);
+        truncated.persist();
+        assertThat(new ClassLayoutStore(path, 42L).shallowSize(ENGINE, Integer.class), is(16L));
+    }
+
+    @Test
+    public void testDoesNotRecordLambdas() {
+        Supplier<String> lambda = () -> "";
+        ClassLayoutStore store = new ClassLayoutStore(folder.getRoot().toPath().resolve("layouts"), 42L);
+        store.record(ENGINE, lambda.getClass(), 16L);
+        assertThat(store.shallowSize(ENGINE, lambda.getClass()), nullValue());
+    }
+}
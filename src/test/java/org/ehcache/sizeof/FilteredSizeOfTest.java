@@ -16,6 +16,7 @@
  */
 package org.ehcache.sizeof;
 
+import org.ehcache.sizeof.annotations.DeeplyImmutable;
 import org.ehcache.sizeof.annotations.IgnoreSizeOf;
 import org.ehcache.sizeof.filteredtest.AnnotationFilteredPackage;
 import org.ehcache.sizeof.filteredtest.custom.CustomAnnotationFilteredPackage;
@@ -79,6 +80,16 @@ public class FilteredSizeOfTest extends AbstractSizeOfTest {
         assertThat(deepSizeOf(sizeOf, new CustomAnnotationFilteredPackage()), equalTo(0L));
     }
 
+    @Test
+    public void testDeeplyImmutableAnnotation() throws Exception {
+        SizeOf sizeOf = new CrossCheckingSizeOf(new AnnotationSizeOfFilter());
+        AnnotationImmutableClass immutable = new AnnotationImmutableClass();
+        long size = deepSizeOf(sizeOf, immutable);
+        assertThat(size, greaterThan(16 * 1024L));
+        assertThat(deepSizeOf(sizeOf, new Referrer(immutable)), equalTo(size + deepSizeOf(sizeOf, new Referrer(null))));
+        assertThat(deepSizeOf(sizeOf, immutable), equalTo(size));
+    }
+
     @Test(expected = IllegalStateException.class)
     public void testNotPossibleToHaveTwoIgnoreSizeOfAnnotations() throws Exception {
         SizeOf sizeOf = new CrossCheckingSizeOf(new AnnotationSizeOfFilter());
@@ -102,6 +113,12 @@ public class FilteredSizeOfTest extends AbstractSizeOfTest {
         private final byte[] bigArray = new byte[16 * 1024];
     }
 
+    @DeeplyImmutable
+    public static class AnnotationImmutableClass {
+
+        private final byte[] bigArray = new byte[16 * 1024];
+    }
+
     @IgnoreSizeOf(inherited = true)
     public static class Parent {
     }
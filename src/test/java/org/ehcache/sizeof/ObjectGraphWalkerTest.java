@@ -20,15 +20,29 @@ import org.ehcache.sizeof.filters.SizeOfFilter;
 import org.ehcache.sizeof.impl.PassThroughFilter;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.core.IsNull.notNullValue;
 import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
@@ -106,6 +120,392 @@ public class ObjectGraphWalkerTest {
         assertThat(walker.walk(), is(0L));
     }
 
+    @Test
+    public void testMemoizesFixedShapes() {
+        final AtomicInteger visited = new AtomicInteger();
+        ObjectGraphWalker walker = new ObjectGraphWalker(object -> {
+            visited.incrementAndGet();
+            return 10;
+        }, new PassThroughFilter(), true, true, false);
+
+        assertThat(walker.walk(new FixedShape(new Leaf())), is(30L));
+        assertThat(visited.getAndSet(0), is(3));
+        assertThat(walker.walk(new FixedShape(new Leaf())), is(30L));
+        assertThat(visited.getAndSet(0), is(0));
+
+        // a null reference makes the instance ineligible, it then gets walked
+        assertThat(walker.walk(new FixedShape(null)), is(20L));
+        assertThat(visited.getAndSet(0), is(2));
+
+        // non-final field types are never of a fixed shape
+        assertThat(walker.walk(new SomeClassHolder(), new SomeClassHolder()), is(60L));
+        assertThat(visited.getAndSet(0), is(6));
+    }
+
+    @Test
+    public void testMemoizesDeeplyImmutableObjects() {
+        final AtomicInteger visited = new AtomicInteger();
+        ObjectGraphWalker walker = new ObjectGraphWalker(object -> {
+            visited.incrementAndGet();
+            return 1;
+        }, new PassThroughFilter() {
+            @Override
+            public boolean isDeeplyImmutable(final Class<?> klazz) {
+                return klazz == LookupTable.class;
+            }
+        }, true);
+
+        final LookupTable table = new LookupTable();
+        assertThat(walker.walk(new SomeClassHolder(), table), is(3L + 4L));
+        assertThat(visited.getAndSet(0), is(3 + 4));
+        assertThat(walker.walk(new SomeClassHolder(), table), is(3L + 4L));
+        assertThat(visited.getAndSet(0), is(3));
+        assertThat(walker.walk(table, table), is(4L));
+        assertThat(visited.getAndSet(0), is(0));
+        assertThat(walker.walk(new LookupTable()), is(4L));
+        assertThat(visited.getAndSet(0), is(4));
+    }
+
+    @Test
+    public void testMemoizesDeeplyImmutableObjectsReferencingEachOther() {
+        final AtomicInteger visited = new AtomicInteger();
+        ObjectGraphWalker walker = new ObjectGraphWalker(object -> {
+            visited.incrementAndGet();
+            return 1;
+        }, new PassThroughFilter() {
+            @Override
+            public boolean isDeeplyImmutable(final Class<?> klazz) {
+                return klazz == Parent.class || klazz == Child.class;
+            }
+        }, true);
+
+        final Parent parent = new Parent();
+        assertThat(walker.walk(parent), is(2L));
+        assertThat(visited.getAndSet(0), is(2));
+        assertThat(walker.walk(parent.child), is(2L));
+        assertThat(visited.getAndSet(0), is(2));
+        assertThat(walker.walk(parent, parent.child), is(4L));
+        assertThat(visited.getAndSet(0), is(0));
+    }
+
+    @Test
+    public void testCachesUnchangedCollectionSizes() {
+        final AtomicInteger visited = new AtomicInteger();
+        ObjectGraphWalker walker = new ObjectGraphWalker(object -> {
+            visited.incrementAndGet();
+            return 1;
+        }, new PassThroughFilter(), true, false, true);
+
+        final Map<Object, Object> map = new HashMap<>();
+        final Object key = new Object();
+        map.put(key, new Object());
+        assertThat(CollectionSizeCache.isSupported(map), is(true));
+        final long size = walker.walk(map);
+        assertThat(visited.getAndSet(0) > 0, is(true));
+        assertThat(walker.walk(map), is(size));
+        assertThat(visited.getAndSet(0), is(0));
+
+        // removing and adding back a mapping leaves the size unchanged, but not the modCount
+        map.put(new Object(), map.remove(key));
+        assertThat(walker.walk(map), is(size));
+        assertThat(visited.getAndSet(0) > 0, is(true));
+
+        // listeners get notified of every object, cached or not
+        final AtomicInteger notified = new AtomicInteger();
+        assertThat(walker.walk((object, objectSize) -> notified.incrementAndGet(), map), is(size));
+        assertThat(notified.get() > 0, is(true));
+
+        final Object other = new Object();
+        map.put(other, new Object());
+        assertThat(walker.walk(map), is(size + 3));
+        assertThat(walker.walk(map), is(size + 3));
+        assertThat(walker.walk(map, new Object()), is(size + 4));
+
+        // replacing values in place changes neither the modCount nor the size
+        map.put(other, new Object[] { new Object() });
+        assertThat(walker.walk(map), is(size + 4));
+        assertThat(walker.walk(map), is(size + 4));
+        assertThat(visited.getAndSet(0) > 0, is(true));
+
+        final List<Object> list = new ArrayList<>(Arrays.asList(new Object(), new Object()));
+        final long listSize = walker.walk(list);
+        assertThat(walker.walk(list), is(listSize));
+        list.set(0, new Object[] { new Object() });
+        assertThat(walker.walk(list), is(listSize + 1));
+    }
+
+    @Test
+    public void testTreeModeDoesNotTrackVisitedObjects() {
+        ObjectGraphWalker walker = new ObjectGraphWalker(object -> 1, new PassThroughFilter(), true);
+
+        final Object shared = new Object();
+        final Object[] tree = { new Object(), new Object[] { new Object(), new Object() } };
+        assertThat(walker.walkTree(tree), is(walker.walk(tree)));
+        assertThat(walker.walkTree(shared, shared), is(2L));
+        assertThat(walker.walk(shared, shared), is(1L));
+
+        // cycles get detected thanks to the object limit, and the graph then walked again tracking visited objects
+        final Object[] cycle = new Object[2];
+        cycle[0] = new Object[] { cycle };
+        cycle[1] = new Object();
+        assertThat(walker.walkTree(cycle), is(3L));
+    }
+
+    @Test
+    public void testApproximateWalkTracksVisitedObjects() {
+        ObjectGraphWalker walker = new ObjectGraphWalker(object -> 1, new PassThroughFilter(), true);
+
+        final Object shared = new Object();
+        final Object[] cycle = new Object[2];
+        cycle[0] = new Object[] { cycle, shared };
+        cycle[1] = shared;
+        assertThat(walker.walkApproximate(cycle), is(3L));
+        assertThat(walker.walkApproximate(shared, shared), is(1L));
+
+        final Object[] big = new Object[10000];
+        for (int i = 0; i < big.length; i++) {
+            big[i] = new Object();
+        }
+        final long approximate = walker.walkApproximate((Object)big);
+        assertThat(approximate <= walker.walk((Object)big), is(true));
+        assertThat(approximate > 9900, is(true));
+    }
+
+    @Test
+    public void testWalksLongChains() {
+        ObjectGraphWalker walker = new ObjectGraphWalker(object -> 1, new PassThroughFilter(), true);
+
+        final LinkedList<Object> chain = new LinkedList<>();
+        for (int i = 0; i < 100000; i++) {
+            chain.add(new Object());
+        }
+        // the list, its nodes and their items
+        assertThat(walker.walk(chain), is(200001L));
+    }
+
+    @Test
+    public void testReadsReferencesThroughSizers() {
+        ObjectGraphWalker walker = new ObjectGraphWalker(object -> 1, new PassThroughFilter(), true);
+        SizedHolderSizer.READS.set(0);
+        assertThat(walker.walk(new SizedHolder()), is(3L));
+        assertThat(SizedHolderSizer.READS.get(), is(1));
+
+        // a sizer that doesn't read exactly the fields left to walk by the filters isn't used
+        ObjectGraphWalker filtering = new ObjectGraphWalker(object -> 1, new PassThroughFilter() {
+            @Override
+            public Collection<Field> filterFields(final Class<?> klazz, final Collection<Field> fields) {
+                fields.removeIf(field -> field.getName().equals("two"));
+                return fields;
+            }
+        }, true);
+        assertThat(filtering.walk(new SizedHolder()), is(2L));
+        assertThat(SizedHolderSizer.READS.get(), is(1));
+    }
+
+    @Test
+    public void testFindsSizersThroughTheClassLoaderOfTheType() throws Exception {
+        final Path root = Files.createTempDirectory("sizers");
+        final Path services = Files.createDirectories(root.resolve("META-INF/services")).resolve(Sizer.class.getName());
+        Files.write(services, IsolatedHolderSizer.class.getName().getBytes(StandardCharsets.UTF_8));
+        assertThat(Sizers.get(IsolatedHolder.class), nullValue());
+
+        try (URLClassLoader classLoader = new IsolatingClassLoader(root.toUri().toURL())) {
+            final Class<?> type = classLoader.loadClass(IsolatedHolder.class.getName());
+            assertThat(type.getClassLoader(), sameInstance((ClassLoader)classLoader));
+            final Sizer<Object> sizer = Sizers.get(type);
+            assertThat(sizer.type(), sameInstance((Object)type));
+            assertThat(Sizers.get(type), sameInstance(sizer));
+        } finally {
+            Files.delete(services);
+            Files.delete(services.getParent());
+            Files.delete(services.getParent().getParent());
+            Files.delete(root);
+        }
+    }
+
+    @Test
+    public void testGeneratesSizers() throws NoSuchFieldException {
+        final Field[] fields = { SomeClassHolder.class.getDeclaredField("one"), SomeClassHolder.class.getDeclaredField("two") };
+        final Sizer<Object> sizer = SizerGenerator.generate(SomeClassHolder.class, fields);
+        assertThat(sizer, notNullValue());
+        assertThat(sizer.type(), sameInstance((Object)SomeClassHolder.class));
+        assertThat(sizer.fields().size(), is(2));
+
+        final SomeClassHolder holder = new SomeClassHolder();
+        final List<Object> references = new ArrayList<>();
+        sizer.references(holder, references::add);
+        assertThat(references.size(), is(2));
+        assertThat(references.get(0), sameInstance(holder.one));
+        assertThat(references.get(1), sameInstance(holder.two));
+    }
+
+    @Test
+    public void testPromotesWalkPlansOnce() throws InterruptedException {
+        final WalkPlan plan = new WalkPlan(new Field[0], null, false, null);
+        final AtomicInteger promotions = new AtomicInteger();
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    if (plan.shouldPromote(100)) {
+                        promotions.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(promotions.get(), is(1));
+    }
+
+    @Test
+    public void testBloomFilterVisitedTracker() {
+        BloomFilterVisitedTracker tracker = new BloomFilterVisitedTracker(1024 * 1024);
+        assertThat(tracker.falsePositiveRate(), is(0.0));
+        assertThat(tracker.allocatedBytes(), is(64L * 1024));
+        final Object object = new Object();
+        assertThat(tracker.add(object), is(true));
+        assertThat(tracker.add(object), is(false));
+
+        // filters get allocated as objects get visited, up to the configured size for the largest
+        final List<Object> objects = new ArrayList<>();
+        for (int i = 0; i < 200000; i++) {
+            objects.add(new Object());
+            tracker.add(objects.get(i));
+        }
+        assertThat(tracker.allocatedBytes(), is((64L + 256 + 1024) * 1024));
+        assertThat(tracker.visitedCount() > 199000, is(true));
+        assertThat(tracker.falsePositiveRate() > 0, is(true));
+        assertThat(tracker.falsePositiveRate() < 0.01, is(true));
+    }
+
+    public static final class LookupTable {
+        private final Object[] entries = { new Object(), new Object() };
+    }
+
+    public static final class Parent {
+        final Child child = new Child(this);
+    }
+
+    public static final class Child {
+        final Parent parent;
+
+        Child(final Parent parent) {
+            this.parent = parent;
+        }
+    }
+
+    public static final class Leaf {
+        private long value;
+    }
+
+    public static final class FixedShape {
+        private final Leaf one = new Leaf();
+        private final Leaf two;
+
+        FixedShape(Leaf two) {
+            this.two = two;
+        }
+    }
+
+    public static final class SizedHolder {
+        private final Object one = new Object();
+        private final Object two = new Object();
+    }
+
+    public static final class SizedHolderSizer implements Sizer<SizedHolder> {
+
+        static final AtomicInteger READS = new AtomicInteger();
+
+        @Override
+        public Class<SizedHolder> type() {
+            return SizedHolder.class;
+        }
+
+        @Override
+        public Collection<Field> fields() {
+            try {
+                return Arrays.asList(SizedHolder.class.getDeclaredField("one"), SizedHolder.class.getDeclaredField("two"));
+            } catch (NoSuchFieldException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        @Override
+        public void references(final SizedHolder instance, final Consumer<Object> references) {
+            READS.incrementAndGet();
+            references.accept(instance.one);
+            references.accept(instance.two);
+        }
+    }
+
+    public static final class IsolatedHolder {
+        private final Object one = new Object();
+    }
+
+    public static final class IsolatedHolderSizer implements Sizer<IsolatedHolder> {
+
+        @Override
+        public Class<IsolatedHolder> type() {
+            return IsolatedHolder.class;
+        }
+
+        @Override
+        public Collection<Field> fields() {
+            try {
+                return Arrays.asList(IsolatedHolder.class.getDeclaredField("one"));
+            } catch (NoSuchFieldException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        @Override
+        public void references(final IsolatedHolder instance, final Consumer<Object> references) {
+            references.accept(instance.one);
+        }
+    }
+
+    /**
+     * Defines the {@code IsolatedHolder} types itself, as an application server would for the classes it deploys
+     */
+    private static final class IsolatingClassLoader extends URLClassLoader {
+
+        IsolatingClassLoader(final URL services) {
+            super(new URL[] { services }, ObjectGraphWalkerTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(IsolatedHolder.class.getName())) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                final Class<?> loaded = findLoadedClass(name);
+                if (loaded != null) {
+                    return loaded;
+                }
+                try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    final byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        bytes.write(buffer, 0, read);
+                    }
+                    return defineClass(name, bytes.toByteArray(), 0, bytes.size());
+                } catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        }
+    }
+
+    public static final class SomeClassHolder {
+        private final Object one = new Object();
+        private final Object two = new Object();
+    }
+
     public class SomeInnerClass {
 
         private int value;
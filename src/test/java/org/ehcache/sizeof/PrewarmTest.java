@@ -0,0 +1,134 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import org.ehcache.sizeof.filteredtest.AnnotationFilteredPackage;
+import org.ehcache.sizeof.filteredtest.custom.CustomAnnotationFilteredPackage;
+import org.ehcache.sizeof.filters.SizeOfFilter;
+import org.ehcache.sizeof.impl.UnsafeSizeOf;
+import org.junit.Test;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class PrewarmTest {
+
+    @Test
+    public void testWarmsUpTypesOfFieldsTransitively() {
+        final RecordingFilter filter = new RecordingFilter();
+        final CountingSizeOf sizeOf = new CountingSizeOf(filter);
+
+        sizeOf.prewarm(Root.class);
+
+        assertThat(filter.walked, hasItems(Root.class, Child.class, Leaf[].class, Leaf.class));
+        assertThat(filter.walked, not(hasItem(Abstract.class)));
+        assertThat(filter.walked, not(hasItem(Runnable.class)));
+
+        final long size = sizeOf.deepSizeOf(new Root());
+        assertThat(sizeOf.measured.get(Root.class), is((Integer)null));
+        assertThat(sizeOf.measured.get(Child.class), is((Integer)null));
+        assertThat(sizeOf.measured.get(Leaf.class), is((Integer)null));
+        assertThat(size, is(new UnsafeSizeOf().deepSizeOf(new Root())));
+    }
+
+    @Test
+    public void testBoundsTheDepthWarmedUp() {
+        final RecordingFilter filter = new RecordingFilter();
+        System.setProperty("org.ehcache.sizeof.prewarmDepth", "1");
+        try {
+            new CountingSizeOf(filter).prewarm(Root.class);
+        } finally {
+            System.clearProperty("org.ehcache.sizeof.prewarmDepth");
+        }
+        assertThat(filter.walked, hasItems(Root.class, Child.class));
+        assertThat(filter.walked, not(hasItem(Leaf[].class)));
+    }
+
+    @Test
+    public void testWarmsUpPackagesFromDirectories() {
+        final RecordingFilter filter = new RecordingFilter();
+        new CountingSizeOf(filter).prewarmPackages(getClass().getClassLoader(), "org.ehcache.sizeof.filteredtest");
+        assertThat(filter.walked, hasItems(AnnotationFilteredPackage.class, CustomAnnotationFilteredPackage.class, byte[].class));
+    }
+
+    @Test
+    public void testWarmsUpPackagesFromJars() {
+        final RecordingFilter filter = new RecordingFilter();
+        new CountingSizeOf(filter).prewarmPackages(getClass().getClassLoader(), "org.slf4j.helpers");
+        assertThat(filter.walked, hasItem(MessageFormatter.class));
+    }
+
+    static class Root {
+        Child child = new Child();
+        Abstract abstractValue;
+        Runnable task;
+    }
+
+    static class Child {
+        Leaf[] leaves = { new Leaf(), new Leaf() };
+    }
+
+    static class Leaf {
+        long value;
+        Object next;
+    }
+
+    abstract static class Abstract {
+        Object value;
+    }
+
+    private static class CountingSizeOf extends UnsafeSizeOf {
+
+        final Map<Class<?>, Integer> measured = new ConcurrentHashMap<>();
+
+        CountingSizeOf(SizeOfFilter filter) {
+            super(filter, true, false);
+        }
+
+        @Override
+        public long sizeOf(Object obj) {
+            measured.merge(obj.getClass(), 1, Integer::sum);
+            return super.sizeOf(obj);
+        }
+    }
+
+    private static class RecordingFilter implements SizeOfFilter {
+
+        final Set<Class<?>> walked = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public Collection<Field> filterFields(Class<?> klazz, Collection<Field> fields) {
+            return fields;
+        }
+
+        @Override
+        public boolean filterClass(Class<?> klazz) {
+            walked.add(klazz);
+            return true;
+        }
+    }
+}
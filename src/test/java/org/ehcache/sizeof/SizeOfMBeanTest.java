@@ -0,0 +1,94 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import org.ehcache.sizeof.impl.JvmInformation;
+import org.ehcache.sizeof.impl.UnsafeSizeOf;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThat;
+
+public class SizeOfMBeanTest {
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    @Test
+    public void testExposesWhatGotMeasured() throws Exception {
+        final SizeOf sizeOf = new UnsafeSizeOf();
+        final Pair pair = new Pair(new Pair(null, null), new Object());
+        final long size = sizeOf.deepSizeOf(pair);
+
+        final ObjectName name = sizeOf.registerMBean("test");
+        try {
+            assertThat(name, is(new ObjectName("org.ehcache.sizeof:type=SizeOf,name=\"test\"")));
+            assertThat(server.getAttribute(name, "Calls"), is((Object)0L));
+
+            assertThat(sizeOf.deepSizeOf(pair), is(size));
+            assertThat(sizeOf.deepSizeOfTree(pair), is(size));
+
+            assertThat(server.getAttribute(name, "Engine"), is((Object)UnsafeSizeOf.class.getName()));
+            assertThat(server.getAttribute(name, "JvmInformation"),
+                is((Object)JvmInformation.current().getJvmDescription()));
+            assertThat(server.getAttribute(name, "Calls"), is((Object)2L));
+            assertThat(server.getAttribute(name, "ObjectsVisited"), is((Object)6L));
+            assertThat(server.getAttribute(name, "BytesMeasured"), is((Object)(2 * size)));
+            assertThat((Long)server.getAttribute(name, "NanosSpent"), greaterThan(0L));
+            assertThat(server.getAttribute(name, "WalkPlanMisses"), is((Object)0L));
+            assertThat(server.getAttribute(name, "WalkPlanHitRatio"), is((Object)1.0));
+            assertThat(server.getAttribute(name, "FilterVerdictHits"), is((Object)6L));
+            assertThat(server.getAttribute(name, "ShallowSizeHits"), is((Object)6L));
+            assertThat(server.getAttribute(name, "TruncatedWalks"), is((Object)0L));
+        } finally {
+            sizeOf.unregisterMBean();
+        }
+        assertThat(server.isRegistered(name), is(false));
+    }
+
+    @Test
+    public void testDoesNotRegisterNewInstances() throws Exception {
+        SizeOf.newInstance();
+        assertThat(server.queryNames(new ObjectName("org.ehcache.sizeof:type=SizeOf,*"), null).isEmpty(), is(true));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRegistersOnlyOnce() throws Exception {
+        final SizeOf sizeOf = new UnsafeSizeOf();
+        sizeOf.registerMBean("once");
+        try {
+            sizeOf.registerMBean("twice");
+        } finally {
+            sizeOf.unregisterMBean();
+        }
+    }
+
+    private static final class Pair {
+
+        private final Object first;
+        private final Object second;
+
+        Pair(final Object first, final Object second) {
+            this.first = first;
+            this.second = second;
+        }
+    }
+}
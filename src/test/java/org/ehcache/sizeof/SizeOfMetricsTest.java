@@ -0,0 +1,174 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import org.ehcache.sizeof.impl.UnsafeSizeOf;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Metrics are only discovered by class loaders of their own, for the ones recording here not to be notified of what every
+ * other test sizes.
+ */
+public class SizeOfMetricsTest {
+
+    private static volatile List<String> events;
+    private static Path services;
+
+    @BeforeClass
+    public static void listMetrics() throws IOException {
+        services = Files.createTempDirectory("sizeof-metrics");
+        final Path file = services.resolve("META-INF/services/" + SizeOfMetrics.class.getName());
+        Files.createDirectories(file.getParent());
+        Files.write(file, Collections.singletonList(RecordingMetrics.class.getName()), StandardCharsets.UTF_8);
+    }
+
+    @AfterClass
+    public static void deleteMetrics() throws IOException {
+        try (Stream<Path> paths = Files.walk(services)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testIsDisabledWithoutMetrics() {
+        assertThat(Metrics.ENABLED, is(false));
+    }
+
+    @Test
+    public void testDiscoversMetrics() throws Exception {
+        inIsolation(Discovery.class);
+    }
+
+    @Test
+    public void testReportsWalksAndCacheMisses() throws Exception {
+        inIsolation(WalksAndCacheMisses.class);
+    }
+
+    @Test
+    public void testLoadsMetricsThroughTheGivenClassLoader() throws Exception {
+        final ClassLoader own = SizeOfMetrics.class.getClassLoader();
+        assertThat(Metrics.load(own).isEmpty(), is(true));
+        try (URLClassLoader listing = new URLClassLoader(new URL[] { services.toUri().toURL() }, own)) {
+            final List<SizeOfMetrics> metrics = Metrics.load(listing);
+            assertThat(metrics.size(), is(1));
+            assertThat(metrics.get(0) instanceof RecordingMetrics, is(true));
+        }
+    }
+
+    /**
+     * Runs the scenario in a class loader of its own, which lists the {@link RecordingMetrics}
+     */
+    private static void inIsolation(Class<? extends Runnable> scenario) throws Exception {
+        final String[] classPath = System.getProperty("java.class.path").split(File.pathSeparator);
+        final List<URL> urls = new ArrayList<>();
+        for (String element : classPath) {
+            urls.add(new File(element).toURI().toURL());
+        }
+        urls.add(services.toUri().toURL());
+        try (URLClassLoader loader = new URLClassLoader(urls.toArray(new URL[urls.size()]),
+            ClassLoader.getSystemClassLoader().getParent())) {
+            ((Runnable)loader.loadClass(scenario.getName()).newInstance()).run();
+        }
+    }
+
+    public static final class Discovery implements Runnable {
+
+        @Override
+        public void run() {
+            assertThat(Metrics.ENABLED, is(true));
+            assertThat(Metrics.METRICS instanceof RecordingMetrics, is(true));
+        }
+    }
+
+    public static final class WalksAndCacheMisses implements Runnable {
+
+        @Override
+        public void run() {
+            events = Collections.synchronizedList(new ArrayList<>());
+            final SizeOf sizeOf = new UnsafeSizeOf();
+            final Pair pair = new Pair(new Pair(null, null), new Object());
+            final long size = sizeOf.deepSizeOf(pair);
+            final String engine = UnsafeSizeOf.class.getName();
+
+            assertThat(events, hasItems("started " + engine, "ended " + engine + " objects=3 bytes=" + size + " truncated=false",
+                "missed WALK_PLAN " + Pair.class.getName(), "missed FILTER_VERDICT " + Pair.class.getName(),
+                "missed SHALLOW_SIZE " + Pair.class.getName(), "missed SHALLOW_SIZE " + Object.class.getName()));
+            assertThat(events.get(0), is("started " + engine));
+
+            events.clear();
+            sizeOf.deepSizeOfTree(pair);
+            assertThat(events, is(Arrays.asList("started " + engine,
+                "ended " + engine + " objects=3 bytes=" + size + " truncated=false")));
+        }
+    }
+
+    public static final class RecordingMetrics implements SizeOfMetrics {
+
+        @Override
+        public void walkStarted(final String engine) {
+            record("started " + engine);
+        }
+
+        @Override
+        public void walkEnded(final String engine, final long objects, final long bytes, final long nanos, final boolean truncated) {
+            record("ended " + engine + " objects=" + objects + " bytes=" + bytes + " truncated=" + truncated);
+        }
+
+        @Override
+        public void cacheMissed(final Cache cache, final Class<?> type) {
+            record("missed " + cache + " " + type.getName());
+        }
+
+        private static void record(final String event) {
+            final List<String> events = SizeOfMetricsTest.events;
+            if (events != null) {
+                events.add(event);
+            }
+        }
+    }
+
+    private static final class Pair {
+
+        private final Object first;
+        private final Object second;
+
+        Pair(final Object first, final Object second) {
+            this.first = first;
+            this.second = second;
+        }
+    }
+}
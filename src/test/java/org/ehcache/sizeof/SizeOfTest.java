@@ -17,6 +17,7 @@
 package org.ehcache.sizeof;
 
 import org.ehcache.sizeof.impl.JvmInformation;
+import org.ehcache.sizeof.impl.PassThroughFilter;
 import org.junit.Assert;
 import org.junit.Assume;
 import org.junit.BeforeClass;
@@ -78,6 +79,24 @@ public class SizeOfTest extends AbstractSizeOfTest {
         assertTrue(SizeOf.newInstance().sizeOf(new Object()) > 0);
     }
 
+    @Test
+    public void testInvalidatesCachedSizes() {
+        final AtomicLong measured = new AtomicLong();
+        SizeOf sizeOf = new SizeOf(new PassThroughFilter(), true, true) {
+            @Override
+            public long sizeOf(Object obj) {
+                measured.incrementAndGet();
+                return 16;
+            }
+        };
+        sizeOf.deepSizeOf(new Object());
+        sizeOf.deepSizeOf(new Object());
+        Assert.assertThat(measured.get(), is(1L));
+        sizeOf.invalidateCachedSizes();
+        sizeOf.deepSizeOf(new Object());
+        Assert.assertThat(measured.get(), is(2L));
+    }
+
     @Test
     public void testSizeOfFlyweight() throws Exception {
         SizeOf sizeOf = new CrossCheckingSizeOf(false);
@@ -140,6 +159,8 @@ public class SizeOfTest extends AbstractSizeOfTest {
         Assert.assertThat(deepSizeOf(sizeOf, list1, list2) < (deepSizeOf(sizeOf, list1) + deepSizeOf(sizeOf, list2)), is(true));
         list2.add(new Object());
         Assert.assertThat(deepSizeOf(sizeOf, list2) > deepSizeOf(sizeOf, list1), is(true));
+        Assert.assertThat(sizeOf.deepSizeOfTree(list2), is(deepSizeOf(sizeOf, list2)));
+        Assert.assertThat(sizeOf.approximateDeepSizeOf(list2), is(deepSizeOf(sizeOf, list2)));
     }
 
     private void assertThat(Long size, String expression) {
@@ -52,4 +52,14 @@ public class TypeFilterTest {
         assertThat(filtered.contains(field), is(false));
         assertThat(filtered.isEmpty(), is(false));
     }
+
+    @Test
+    public void testStoresDeeplyImmutableClasses() {
+        TypeFilter filter = new TypeFilter();
+        assertThat(filter.isDeeplyImmutable(String.class), is(false));
+        filter.addDeeplyImmutableClass(String.class);
+        assertThat(filter.isDeeplyImmutable(String.class), is(true));
+        assertThat(filter.isDeeplyImmutable(Object.class), is(false));
+        assertThat(filter.filterClass(String.class), is(true));
+    }
 }
@@ -21,6 +21,8 @@ import org.junit.Assume;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.File;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.Arrays;
@@ -49,8 +51,12 @@ public class AgentLoaderRaceTest {
      * race wider.
      */
     @Test
-    public void testAgentLoaderRace() throws InterruptedException, ExecutionException {
-        final URL[] urls = ((URLClassLoader)AgentSizeOf.class.getClassLoader()).getURLs();
+    public void testAgentLoaderRace() throws InterruptedException, ExecutionException, MalformedURLException {
+        final String[] classPath = System.getProperty("java.class.path").split(File.pathSeparator);
+        final URL[] urls = new URL[classPath.length];
+        for (int i = 0; i < classPath.length; i++) {
+            urls[i] = new File(classPath[i]).toURI().toURL();
+        }
 
         Callable<Throwable> agentLoader1 = new Loader(new URLClassLoader(urls, null));
         Callable<Throwable> agentLoader2 = new Loader(new URLClassLoader(urls, null));
@@ -17,9 +17,18 @@
 package org.ehcache.sizeof.impl;
 
 import org.junit.After;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
@@ -28,6 +37,9 @@ import static org.junit.Assert.assertThat;
  */
 public class AgentLoaderTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @After
     public void after() {
         System.getProperties().remove("org.ehcache.sizeof.agent.instrumentationSystemProperty");
@@ -41,4 +53,34 @@ public class AgentLoaderTest {
         assertThat(AgentLoader.agentIsAvailable(), is(true));
         assertThat(System.getProperties().get(AgentLoader.INSTRUMENTATION_INSTANCE_SYSTEM_PROPERTY_NAME), nullValue());
     }
+
+    @Test
+    public void testExtractsAgentOnceUnderItsDigest() throws Exception {
+        final URL agent = AgentLoader.class.getResource("sizeof-agent.jar");
+        final Path cache = folder.getRoot().toPath().resolve("cache");
+
+        final File extracted = AgentLoader.extractAgent(agent, cache);
+        assertThat(extracted.getName().matches("sizeof-agent-[0-9a-f]{64}\\.jar"), is(true));
+        assertThat(Files.readAllBytes(extracted.toPath()), equalTo(Files.readAllBytes(new File(agent.toURI()).toPath())));
+        final long lastModified = extracted.lastModified();
+
+        assertThat(AgentLoader.extractAgent(agent, cache), equalTo(extracted));
+        assertThat(extracted.lastModified(), is(lastModified));
+        assertThat(cache.toFile().list().length, is(1));
+    }
+
+    @Test
+    public void testReplacesCorruptedExtractedAgent() throws Exception {
+        final URL agent = AgentLoader.class.getResource("sizeof-agent.jar");
+        final Path cache = folder.getRoot().toPath();
+        final File extracted = AgentLoader.extractAgent(agent, cache);
+        final byte[] content = Files.readAllBytes(extracted.toPath());
+
+        Files.write(extracted.toPath(), new byte[] { 1, 2, 3 });
+        assertThat(Files.readAllBytes(extracted.toPath()), not(equalTo(content)));
+
+        assertThat(AgentLoader.extractAgent(agent, cache), equalTo(extracted));
+        assertThat(Files.readAllBytes(extracted.toPath()), equalTo(content));
+        assertThat(cache.toFile().list().length, is(1));
+    }
 }
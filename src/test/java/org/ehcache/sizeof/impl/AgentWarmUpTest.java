@@ -0,0 +1,111 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.impl;
+
+import org.ehcache.sizeof.filters.SizeOfFilter;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class AgentWarmUpTest {
+
+    private static final String LOADED_LATER = AgentWarmUpTest.class.getName() + "$LoadedLater";
+
+    @BeforeClass
+    public static void configureAgent() {
+        System.setProperty(AgentLoader.AGENT_OPTIONS, "warmUp=" + Warm.class.getName() + ";" + LOADED_LATER);
+    }
+
+    @AfterClass
+    public static void clearAgentOptions() {
+        System.clearProperty(AgentLoader.AGENT_OPTIONS);
+    }
+
+    @Test
+    public void testWarmsUpConfiguredClasses() throws Exception {
+        assertThat(AgentLoader.loadAgent(), is(true));
+        final RecordingFilter filter = new RecordingFilter();
+        new Warm();
+        new Cold();
+        final AgentSizeOf sizeOf = new AgentSizeOf(filter);
+        Thread.sleep(100);
+        assertThat(filter.walked.isEmpty(), is(true));
+
+        sizeOf.warmUpLoadedClasses();
+
+        awaitWarmUp(filter, Warm.class);
+        assertThat(filter.walked, hasItem(Warm.Nested.class));
+
+        awaitWarmUp(filter, Class.forName(LOADED_LATER));
+        assertThat(filter.walked, not(hasItem(Cold.class)));
+    }
+
+    private static void awaitWarmUp(RecordingFilter filter, Class<?> type) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!filter.walked.contains(type) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(filter.walked.contains(type), is(true));
+    }
+
+    static class Warm {
+        Object value;
+
+        static class Nested {
+            Object value = new Object();
+        }
+
+        Warm() {
+            value = new Nested();
+        }
+    }
+
+    static class Cold {
+        Object value;
+    }
+
+    static class LoadedLater {
+        Object value;
+    }
+
+    private static class RecordingFilter implements SizeOfFilter {
+
+        final Set<Class<?>> walked = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public Collection<Field> filterFields(Class<?> klazz, Collection<Field> fields) {
+            return fields;
+        }
+
+        @Override
+        public boolean filterClass(Class<?> klazz) {
+            walked.add(klazz);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.impl;
+
+import org.ehcache.sizeof.SizeOf;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class AsyncAgentSizeOfTest {
+
+    @Test
+    public void testSwitchesToTheAgentOnceLoaded() throws Exception {
+        AsyncAgentSizeOf sizeOf = new AsyncAgentSizeOf();
+        List<Object> graph = new ArrayList<>(Arrays.asList(new Object(), "foo", new HashMap<>(), new int[3]));
+        long before = sizeOf.deepSizeOf(graph);
+
+        assertThat(AgentLoader.loadAgentInBackground().get(30, TimeUnit.SECONDS), is(true));
+        // switches without waiting for a sizing call
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!sizeOf.getEngineName().equals(AgentSizeOf.class.getName()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(sizeOf.getEngineName(), is(AgentSizeOf.class.getName()));
+
+        long after = sizeOf.deepSizeOf(graph);
+        assertThat(after, is(new AgentSizeOf().deepSizeOf(graph)));
+        assertThat(after, is(before));
+    }
+
+    @Test
+    public void testUsesTheAgentRightAwayOnceLoaded() throws Exception {
+        assertThat(AgentLoader.loadAgentInBackground().get(30, TimeUnit.SECONDS), is(true));
+        assertThat(new AsyncAgentSizeOf().getEngineName(), is(AgentSizeOf.class.getName()));
+    }
+
+    @Test
+    public void testIsCreatedWhenAsyncLoadingIsConfigured() {
+        System.setProperty(AsyncAgentSizeOf.ASYNC_LOADING, "true");
+        try {
+            assertThat(SizeOf.newInstance(), instanceOf(AsyncAgentSizeOf.class));
+        } finally {
+            System.clearProperty(AsyncAgentSizeOf.ASYNC_LOADING);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.impl;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.management.MBeanServerFactory;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs in its own JVM, as surefire doesn't reuse forks: the data model is only detected once
+ */
+public class JvmInformationDetectionTest {
+
+    @BeforeClass
+    public static void setUp() {
+        // using the enum doesn't detect the data model yet
+        assertThat(JvmInformation.valueOf("HOTSPOT_64_BIT").getPointerSize(), is(8));
+        JvmInformation.isHotspot();
+        System.setProperty("org.ehcache.sizeof.jvmInformation", "IBM_64_BIT");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        System.clearProperty("org.ehcache.sizeof.jvmInformation");
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDataModelCanBeConfigured() {
+        assertThat(JvmInformation.current(), is(JvmInformation.IBM_64_BIT));
+        assertThat(JvmInformation.CURRENT_JVM_INFORMATION, is(JvmInformation.IBM_64_BIT));
+        assertThat(ObjectLayout.CURRENT_LAYOUT.getJvmInformation(), is(JvmInformation.IBM_64_BIT));
+        assertThat(ObjectLayout.CURRENT_LAYOUT.getObjectHeaderSize(), is(24));
+    }
+
+    @Test
+    public void testReadsVmOptionsWithoutThePlatformMBeanServer() {
+        assumeTrue(JvmInformation.isHotspot() || JvmInformation.isOpenJDK());
+        assertThat(JvmInformation.getHotSpotVmOptionValue("UseCompressedOops"), notNullValue());
+        assertThat(MBeanServerFactory.findMBeanServer(null).isEmpty(), is(true));
+    }
+}
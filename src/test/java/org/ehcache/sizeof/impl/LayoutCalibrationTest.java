@@ -0,0 +1,69 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.impl;
+
+import org.junit.Test;
+
+import static org.ehcache.sizeof.impl.ObjectLayout.CURRENT_LAYOUT;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeThat;
+import static org.junit.Assume.assumeTrue;
+
+public class LayoutCalibrationTest {
+
+    @Test
+    public void testMeasuresTheDetectedLayout() {
+        assumeThat(UnsafeSizeOf.UNSAFE, notNullValue());
+        assumeTrue(JvmInformation.isHotspot() || JvmInformation.isOpenJDK());
+
+        ObjectLayout calibrated = LayoutCalibration.calibrate(JvmInformation.current(), UnsafeSizeOf.UNSAFE, null);
+        verifyMatchesCurrentLayout(calibrated);
+        assertThat((long)calibrated.getMinimumObjectSize(), is(CURRENT_LAYOUT.align(CURRENT_LAYOUT.getObjectHeaderSize())));
+        assertThat(calibrated.getFieldOffsetAdjustment(), is(0));
+    }
+
+    @Test
+    public void testMeasuresTheDetectedLayoutUsingTheAgent() {
+        assumeThat(UnsafeSizeOf.UNSAFE, notNullValue());
+        assumeTrue(JvmInformation.isHotspot() || JvmInformation.isOpenJDK());
+        assumeTrue(AgentLoader.loadAgent());
+
+        ObjectLayout calibrated = LayoutCalibration.calibrate(JvmInformation.current(), UnsafeSizeOf.UNSAFE,
+            AgentLoader::agentSizeOf);
+        verifyMatchesCurrentLayout(calibrated);
+        assertThat(calibrated.getObjectAlignment(), is(CURRENT_LAYOUT.getObjectAlignment()));
+        assertThat((long)calibrated.getMinimumObjectSize(), is(CURRENT_LAYOUT.align(CURRENT_LAYOUT.getObjectHeaderSize())));
+        assertThat(calibrated.getFieldOffsetAdjustment(), is(0));
+        assertThat(calibrated.getAgentSizeOfAdjustment(), is(0));
+    }
+
+    @Test
+    public void testNeedsUnsafe() {
+        assertThat(LayoutCalibration.calibrate(JvmInformation.UNKNOWN_64_BIT, null, null), nullValue());
+    }
+
+    private static void verifyMatchesCurrentLayout(ObjectLayout calibrated) {
+        assertThat(calibrated.getPointerSize(), is(CURRENT_LAYOUT.getPointerSize()));
+        assertThat(calibrated.getJavaPointerSize(), is(CURRENT_LAYOUT.getJavaPointerSize()));
+        assertThat(calibrated.getObjectHeaderSize(), is(CURRENT_LAYOUT.getObjectHeaderSize()));
+        assertThat(calibrated.getArrayHeaderSize(), is(CURRENT_LAYOUT.getArrayHeaderSize()));
+        assertThat(calibrated.hasCompactFieldLayout(), is(CURRENT_LAYOUT.hasCompactFieldLayout()));
+    }
+}
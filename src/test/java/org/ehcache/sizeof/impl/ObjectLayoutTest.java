@@ -0,0 +1,107 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.impl;
+
+import org.junit.Test;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class ObjectLayoutTest {
+
+    @Test
+    public void hotSpotWithCompressedOops() {
+        ObjectLayout layout = ObjectLayout.hotSpot(JvmInformation.HOTSPOT_64_BIT_WITH_COMPRESSED_OOPS, 8, true, false, 8);
+        verifyLayout(layout, 4, 12, 16, 8, 8);
+        assertThat(layout.hasCompactFieldLayout(), is(false));
+    }
+
+    @Test
+    public void hotSpotWithoutCompressedOops() {
+        verifyLayout(ObjectLayout.hotSpot(JvmInformation.HOTSPOT_64_BIT, 8, false, false, 8), 8, 16, 24, 8, 8);
+        verifyLayout(ObjectLayout.hotSpot(JvmInformation.HOTSPOT_64_BIT, 22, false, false, 8), 8, 16, 20, 8, 8);
+    }
+
+    @Test
+    public void hotSpotWithCompressedClassPointersOnly() {
+        ObjectLayout layout = ObjectLayout.hotSpot(JvmInformation.OPENJDK_64_BIT, 17, true, false, 8);
+        verifyLayout(layout, 8, 12, 16, 8, 8);
+        assertThat(layout.hasCompactFieldLayout(), is(true));
+    }
+
+    @Test
+    public void hotSpotWithCompactObjectHeaders() {
+        verifyLayout(ObjectLayout.hotSpot(JvmInformation.OPENJDK_64_BIT_WITH_COMPRESSED_OOPS, 25, true, true, 8), 4, 8, 12, 8, 8);
+    }
+
+    @Test
+    public void hotSpotWithLargerAlignment() {
+        ObjectLayout layout = ObjectLayout.hotSpot(JvmInformation.HOTSPOT_64_BIT_WITH_COMPRESSED_OOPS, 11, true, false, 16);
+        verifyLayout(layout, 4, 12, 16, 16, 16);
+        assertThat(layout.align(20), is(32L));
+        assertThat(layout.align(12), is(16L));
+    }
+
+    @Test
+    public void hotSpotWithConcurrentMarkSweep() {
+        ObjectLayout layout = ObjectLayout.hotSpot(JvmInformation.HOTSPOT_64_BIT_WITH_COMPRESSED_OOPS_AND_CONCURRENT_MARK_AND_SWEEP, 8, true, false, 8);
+        verifyLayout(layout, 4, 12, 16, 8, 24);
+        assertThat(layout.align(12), is(24L));
+    }
+
+    @Test
+    public void hotSpot32Bits() {
+        verifyLayout(ObjectLayout.hotSpot(JvmInformation.HOTSPOT_32_BIT, 8, false, false, 8), 4, 8, 12, 8, 8);
+    }
+
+    @Test
+    public void otherJvms() {
+        verifyLayout(ObjectLayout.of(JvmInformation.IBM_64_BIT), 8, 24, 28, 8, 8);
+        verifyLayout(ObjectLayout.of(JvmInformation.UNKNOWN_32_BIT), 4, 8, 12, 8, 8);
+    }
+
+    @Test
+    public void currentLayoutMatchesUnsafeOffsets() throws Exception {
+        assumeTrue(JvmInformation.isHotspot() || JvmInformation.isOpenJDK());
+        Field field = Unsafe.class.getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        Unsafe unsafe = (Unsafe)field.get(null);
+
+        assertThat((long)unsafe.arrayBaseOffset(int[].class), is((long)ObjectLayout.CURRENT_LAYOUT.getArrayHeaderSize()));
+        assertThat(unsafe.arrayIndexScale(Object[].class), is(ObjectLayout.CURRENT_LAYOUT.getJavaPointerSize()));
+        assertThat(unsafe.objectFieldOffset(IntHolder.class.getDeclaredField("value")),
+            is((long)ObjectLayout.CURRENT_LAYOUT.getObjectHeaderSize()));
+    }
+
+    private static void verifyLayout(ObjectLayout layout, int javaPointerSize, int objHeaderSize, int arrayHeaderSize,
+                                     int objAlign, int minObjSize) {
+        assertThat(layout.getJavaPointerSize(), is(javaPointerSize));
+        assertThat(layout.getObjectHeaderSize(), is(objHeaderSize));
+        assertThat(layout.getArrayHeaderSize(), is(arrayHeaderSize));
+        assertThat(layout.getObjectAlignment(), is(objAlign));
+        assertThat(layout.getMinimumObjectSize(), is(minObjSize));
+    }
+
+    @SuppressWarnings("unused")
+    private static final class IntHolder {
+        private int value;
+    }
+}
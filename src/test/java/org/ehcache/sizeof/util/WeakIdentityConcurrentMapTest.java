@@ -0,0 +1,74 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class WeakIdentityConcurrentMapTest {
+
+    @Test
+    public void testLooksKeysUpByIdentity() {
+        final WeakIdentityConcurrentMap<String, Integer> map = new WeakIdentityConcurrentMap<>();
+        final String key = new String("key");
+        map.put(key, 1);
+
+        assertThat(map.get(key), is(1));
+        assertThat(map.containsKey(key), is(true));
+        assertThat(map.get(new String("key")), nullValue());
+        assertThat(map.containsKey(new String("key")), is(false));
+
+        assertThat(map.putIfAbsent(key, 2), is(1));
+        assertThat(map.remove(key), is(1));
+        assertThat(map.get(key), nullValue());
+    }
+
+    @Test
+    public void testMatchesKeys() {
+        final WeakIdentityConcurrentMap<Class<?>, Boolean> map = new WeakIdentityConcurrentMap<>();
+        map.put(Number.class, true);
+
+        assertThat(map.anyKeyMatches(type -> type.isAssignableFrom(Integer.class)), is(true));
+        assertThat(map.anyKeyMatches(type -> type.isAssignableFrom(String.class)), is(false));
+    }
+
+    @Test
+    public void testReadsEventuallyCleanUpCollectedKeys() throws InterruptedException {
+        final List<Integer> cleanedUp = new ArrayList<>();
+        final WeakIdentityConcurrentMap<Object, Integer> map = new WeakIdentityConcurrentMap<>(cleanedUp::add);
+        map.put(new Object(), 1);
+        final Object key = new Object();
+        map.put(key, 2);
+
+        for (int i = 0; i < 100 && cleanedUp.isEmpty(); i++) {
+            System.gc();
+            for (int j = 0; j < 10000; j++) {
+                map.get(key);
+            }
+            Thread.sleep(10);
+        }
+        assertThat(cleanedUp, is(Collections.singletonList(1)));
+        assertThat(map.get(key), is(2));
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.ehcache.sizeof.impl.UnsafeSizeOf;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Records deep sizing calls with the JDK Flight Recorder, through the jar as packaged
+ */
+public class DeepSizeOfEventIT {
+
+    private static final String DEEP_SIZE_OF = "org.ehcache.sizeof.DeepSizeOf";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRecordsDeepSizingCalls() throws IOException {
+        final SizeOf sizeOf = new UnsafeSizeOf();
+        final List<Object> list = new ArrayList<>();
+        list.add(new Object());
+        final Object other = new Object();
+
+        final long size;
+        final List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(DEEP_SIZE_OF).withThreshold(Duration.ZERO);
+            recording.start();
+            size = sizeOf.deepSizeOf(list, other);
+            recording.stop();
+            events = events(recording);
+        }
+
+        assertThat(events.size(), is(1));
+        final RecordedEvent event = events.get(0);
+        assertThat(event.getClass("rootClass").getName(), is(ArrayList.class.getName()));
+        assertThat(event.getInt("roots"), is(2));
+        assertThat(event.getLong("objects"), is(4L));
+        assertThat(event.getLong("bytes"), is(size));
+        assertThat(event.getBoolean("truncated"), is(false));
+        assertThat(event.getString("engine"), is(sizeOf.getEngineName()));
+    }
+
+    @Test
+    public void testRecordsTruncatedTreeWalks() throws IOException {
+        final SizeOf sizeOf = new UnsafeSizeOf();
+        final Object[] array = new Object[1000001];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = new Object();
+        }
+
+        final long size;
+        final List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(DEEP_SIZE_OF).withThreshold(Duration.ZERO);
+            recording.start();
+            size = sizeOf.deepSizeOfTree(array);
+            recording.stop();
+            events = events(recording);
+        }
+
+        assertThat(events.size(), is(1));
+        final RecordedEvent event = events.get(0);
+        assertThat(event.getLong("bytes"), is(size));
+        assertThat(event.getBoolean("truncated"), is(true));
+    }
+
+    private List<RecordedEvent> events(final Recording recording) throws IOException {
+        final Path file = folder.newFile().toPath();
+        recording.dump(file);
+        return RecordingFile.readAllEvents(file).stream()
+            .filter(event -> event.getEventType().getName().equals(DEEP_SIZE_OF))
+            .collect(Collectors.toList());
+    }
+}
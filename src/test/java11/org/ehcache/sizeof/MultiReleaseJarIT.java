@@ -0,0 +1,86 @@
+/**
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.sizeof;
+
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.jar.JarFile;
+
+import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Checks the jar, as packaged, holds and serves the Java 11 variants of the classes in src/main/java11
+ */
+public class MultiReleaseJarIT {
+
+    private static final int JAVA_11_MAJOR_VERSION = 55;
+
+    @Test
+    public void testPackagesTheJava11Variants() throws IOException {
+        final File jar = new File(SizeOf.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+        assertThat(jar.getName(), endsWith(".jar"));
+        try (JarFile jarFile = new JarFile(jar)) {
+            assertThat(jarFile.getManifest().getMainAttributes().getValue("Multi-Release"), is("true"));
+            for (String name : new String[] { "FieldAccess", "SizingEvents", "DeepSizeOfEvent" }) {
+                assertThat(name, jarFile.getEntry("META-INF/versions/11/org/ehcache/sizeof/" + name + ".class"), notNullValue());
+            }
+        }
+    }
+
+    @Test
+    public void testLoadsTheJava11Variants() throws IOException, ClassNotFoundException {
+        assertThat(majorVersion(FieldAccess.class), is(JAVA_11_MAJOR_VERSION));
+        assertThat(majorVersion(SizingEvents.class), is(JAVA_11_MAJOR_VERSION));
+        // only exists as a Java 11 variant
+        assertThat(majorVersion(Class.forName("org.ehcache.sizeof.DeepSizeOfEvent")), is(JAVA_11_MAJOR_VERSION));
+    }
+
+    @Test
+    public void testTriesToSetFieldsAccessible() throws NoSuchFieldException {
+        assertThat(FieldAccess.trySetAccessible(Holder.class.getDeclaredField("value")), is(true));
+        // denied from Java 16 onwards, where the module system reports it rather than throwing
+        final Field value = String.class.getDeclaredField("value");
+        assertThat(FieldAccess.trySetAccessible(value), is(value.canAccess("")));
+    }
+
+    @Test
+    public void testBeginsNoEventOutsideOfRecordings() {
+        assertThat(SizingEvents.begin(), nullValue());
+    }
+
+    private static int majorVersion(Class<?> type) throws IOException {
+        try (InputStream in = type.getResourceAsStream(type.getSimpleName() + ".class")) {
+            final DataInputStream data = new DataInputStream(in);
+            data.readInt();
+            data.readUnsignedShort();
+            return data.readUnsignedShort();
+        }
+    }
+
+    private static final class Holder {
+        private Object value;
+    }
+}